@@ -0,0 +1,239 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.benchmark;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the drawer benchmarks and writes the results as JSON to
+ * getExternalFilesDir(null)/benchmark-results.json.
+ *
+ * If a benchmark-baseline.json with the same format is pushed to that directory, every result is
+ * compared to it and the ones slower than REGRESSION_THRESHOLD are reported as regressions.
+ *
+ *     adb shell am start -W -n org.arasthel.googlenavdrawermenu.benchmark/.BenchmarkActivity
+ *     adb pull /sdcard/Android/data/org.arasthel.googlenavdrawermenu.benchmark/files/benchmark-results.json
+ */
+public class BenchmarkActivity extends Activity {
+
+    private static final String TAG = "DrawerBenchmark";
+
+    public static final String RESULTS_FILE = "benchmark-results.json";
+    public static final String BASELINE_FILE = "benchmark-baseline.json";
+
+    /**
+     * A result is a regression if its mean time is this much higher than the baseline one
+     */
+    public static final double REGRESSION_THRESHOLD = 0.10;
+
+    private Handler mHandler = new Handler();
+    private FrameLayout mRoot;
+    private TextView mOutput;
+
+    private ArrayList<BenchmarkRunner.Benchmark> mBenchmarks;
+    private ArrayList<FlingBenchmark> mFlingBenchmarks = new ArrayList<FlingBenchmark>();
+    private int mFlingResults = 0;
+    private ArrayList<BenchmarkRunner.Result> mResults = new ArrayList<BenchmarkRunner.Result>();
+    private BenchmarkRunner mRunner = new BenchmarkRunner();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        mOutput = new TextView(this);
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(mOutput);
+        // The fling benchmarks show their drawer over the output
+        mRoot = new FrameLayout(this);
+        mRoot.addView(scrollView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        setContentView(mRoot);
+
+        mBenchmarks = new DrawerBenchmarks(this).getBenchmarks();
+        for(boolean scrollingCache : new boolean[] { false, true }) {
+            mFlingBenchmarks.add(new FlingBenchmark(this, scrollingCache, true));
+            mFlingBenchmarks.add(new FlingBenchmark(this, scrollingCache, false));
+        }
+        // Every benchmark runs in its own message, so the activity draws the progress between them
+        mHandler.post(mRunNext);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mHandler.removeCallbacks(mRunNext);
+    }
+
+    private Runnable mRunNext = new Runnable() {
+        @Override
+        public void run() {
+            if(mResults.size() == mBenchmarks.size()) {
+                runNextFling();
+                return;
+            }
+            addResult(mRunner.run(mBenchmarks.get(mResults.size())));
+            mHandler.post(this);
+        }
+    };
+
+    /**
+     * Runs the fling benchmarks one after another once the others are done. Their mean time is
+     * the one of a frame. They need the FrameMonitor, so they're skipped before Jelly Bean.
+     */
+    private void runNextFling() {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            log("Fling benchmarks skipped, they need Jelly Bean");
+            finishBenchmarks();
+            return;
+        }
+        if(mFlingResults == mFlingBenchmarks.size() || isFinishing()) {
+            finishBenchmarks();
+            return;
+        }
+        mFlingBenchmarks.get(mFlingResults).run(mRoot, new FlingBenchmark.Callback() {
+            @Override
+            public void onFinished(BenchmarkRunner.Result result) {
+                mFlingResults++;
+                addResult(result);
+                runNextFling();
+            }
+        });
+    }
+
+    private void addResult(BenchmarkRunner.Result result) {
+        mResults.add(result);
+        log(String.format(Locale.US, "%s (%d sections): %.3f ms, %.1f allocations",
+                result.name, result.sections, result.meanNanos / 1000000.0, result.allocationsPerIteration));
+        for(Map.Entry<String, Double> extra : result.extras.entrySet()) {
+            log(String.format(Locale.US, "    %s: %.2f", extra.getKey(), extra.getValue()));
+        }
+    }
+
+    private void finishBenchmarks() {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+            json.put("sdk", Build.VERSION.SDK_INT);
+            JSONArray results = new JSONArray();
+            for(BenchmarkRunner.Result result : mResults) {
+                results.put(result.toJson());
+            }
+            json.put("results", results);
+
+            int overAllocationLimit = 0;
+            for(BenchmarkRunner.Result result : mResults) {
+                if(result.exceedsAllocationLimit()) {
+                    overAllocationLimit++;
+                    log(String.format(Locale.US, "ALLOCATIONS %s: %.1f per iteration, at most %.1f expected",
+                            result.getKey(), result.allocationsPerIteration, result.maxAllocationsPerIteration));
+                }
+            }
+            log("Benchmarks over their allocation limit: " + overAllocationLimit);
+
+            File dir = getExternalFilesDir(null);
+            if(dir == null) {
+                log("External storage not available, results only in logcat");
+                Log.i(TAG, json.toString());
+                return;
+            }
+            writeFile(new File(dir, RESULTS_FILE), json.toString(2));
+            log("Results written to " + new File(dir, RESULTS_FILE));
+
+            File baseline = new File(dir, BASELINE_FILE);
+            if(baseline.exists()) {
+                compareWithBaseline(new JSONObject(readFile(baseline)));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Couldn't create the results", e);
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't write the results", e);
+        }
+    }
+
+    private void compareWithBaseline(JSONObject baseline) throws JSONException {
+        HashMap<String, Long> baselineTimes = new HashMap<String, Long>();
+        JSONArray results = baseline.getJSONArray("results");
+        for(int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            baselineTimes.put(result.getString("name") + "/" + result.getInt("sections"), result.getLong("meanNanos"));
+        }
+
+        int regressions = 0;
+        for(BenchmarkRunner.Result result : mResults) {
+            Long baselineTime = baselineTimes.get(result.getKey());
+            if(baselineTime == null || baselineTime == 0) {
+                continue;
+            }
+            double change = (double) (result.meanNanos - baselineTime) / baselineTime;
+            if(change > REGRESSION_THRESHOLD) {
+                regressions++;
+                log(String.format(Locale.US, "REGRESSION %s: %+.1f%%", result.getKey(), change * 100));
+            }
+        }
+        log("Regressions against baseline: " + regressions);
+    }
+
+    private void log(String message) {
+        Log.i(TAG, message);
+        mOutput.append(message + "\n");
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
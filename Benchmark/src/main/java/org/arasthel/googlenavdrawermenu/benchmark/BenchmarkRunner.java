@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.benchmark;
+
+import android.os.Debug;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs a Benchmark until it has been measured for a time budget and records the time and the
+ * number of allocations per iteration.
+ */
+public class BenchmarkRunner {
+
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+    public static final int MIN_ITERATIONS = 5;
+    public static final int WARMUP_ITERATIONS = 3;
+    public static final double NO_ALLOCATION_LIMIT = -1;
+
+    /**
+     * A single benchmark. setUp isn't measured, run is called once per iteration.
+     */
+    public static abstract class Benchmark {
+
+        private final String mName;
+        private final int mSections;
+
+        public Benchmark(String name, int sections) {
+            mName = name;
+            mSections = sections;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public int getSections() {
+            return mSections;
+        }
+
+        public void setUp() {
+        }
+
+        public abstract void run(int iteration);
+
+        /**
+         * @return The most allocations per iteration the code measured is allowed to make, or
+         * NO_ALLOCATION_LIMIT. Results over it are reported as failures.
+         */
+        public double getMaxAllocationsPerIteration() {
+            return NO_ALLOCATION_LIMIT;
+        }
+
+        /**
+         * Called after the last iteration to add values other than the time and allocations
+         * @param result The result, whose extras can be filled
+         */
+        public void addExtras(Result result) {
+        }
+    }
+
+    public static class Result {
+        public String name;
+        public int sections;
+        public int iterations;
+        public long meanNanos;
+        public long minNanos;
+        public long maxNanos;
+        public double allocationsPerIteration;
+        public double maxAllocationsPerIteration = NO_ALLOCATION_LIMIT;
+        public LinkedHashMap<String, Double> extras = new LinkedHashMap<String, Double>();
+
+        public JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("name", name);
+            json.put("sections", sections);
+            json.put("iterations", iterations);
+            json.put("meanNanos", meanNanos);
+            json.put("minNanos", minNanos);
+            json.put("maxNanos", maxNanos);
+            json.put("allocationsPerIteration", allocationsPerIteration);
+            if(maxAllocationsPerIteration != NO_ALLOCATION_LIMIT) {
+                json.put("maxAllocationsPerIteration", maxAllocationsPerIteration);
+            }
+            if(!extras.isEmpty()) {
+                JSONObject extrasJson = new JSONObject();
+                for(Map.Entry<String, Double> extra : extras.entrySet()) {
+                    extrasJson.put(extra.getKey(), extra.getValue().doubleValue());
+                }
+                json.put("extras", extrasJson);
+            }
+            return json;
+        }
+
+        /**
+         * @return true if it allocated more than its benchmark allows
+         */
+        public boolean exceedsAllocationLimit() {
+            return maxAllocationsPerIteration != NO_ALLOCATION_LIMIT && allocationsPerIteration > maxAllocationsPerIteration;
+        }
+
+        /**
+         * @return The key used to match this result with the same one in a baseline
+         */
+        public String getKey() {
+            return name + "/" + sections;
+        }
+    }
+
+    private long mTimeBudgetNanos = DEFAULT_TIME_BUDGET_MILLIS * 1000000L;
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        mTimeBudgetNanos = timeBudgetMillis * 1000000L;
+    }
+
+    @SuppressWarnings("deprecation")
+    public Result run(Benchmark benchmark) {
+        benchmark.setUp();
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            benchmark.run(i);
+        }
+
+        Result result = new Result();
+        result.name = benchmark.getName();
+        result.sections = benchmark.getSections();
+        result.minNanos = Long.MAX_VALUE;
+
+        long total = 0;
+        long allocations = 0;
+        int iteration = 0;
+        Debug.startAllocCounting();
+        try {
+            while(iteration < MIN_ITERATIONS || total < mTimeBudgetNanos) {
+                Debug.resetThreadAllocCount();
+                long start = System.nanoTime();
+                benchmark.run(WARMUP_ITERATIONS + iteration);
+                long time = System.nanoTime() - start;
+                allocations += Debug.getThreadAllocCount();
+
+                total += time;
+                result.minNanos = Math.min(result.minNanos, time);
+                result.maxNanos = Math.max(result.maxNanos, time);
+                iteration++;
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+
+        result.iterations = iteration;
+        result.meanNanos = total / iteration;
+        result.allocationsPerIteration = (double) allocations / iteration;
+        result.maxAllocationsPerIteration = benchmark.getMaxAllocationsPerIteration();
+        benchmark.addExtras(result);
+        return result;
+    }
+}
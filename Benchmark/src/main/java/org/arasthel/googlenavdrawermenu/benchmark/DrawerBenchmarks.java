@@ -0,0 +1,852 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.benchmark;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.Xml;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import org.arasthel.googlenavdrawermenu.adapters.GoogleNavigationDrawerAdapter;
+import org.arasthel.googlenavdrawermenu.adapters.SectionIndex;
+import org.arasthel.googlenavdrawermenu.adapters.SectionModel;
+import org.arasthel.googlenavdrawermenu.adapters.SectionsDiff;
+import org.arasthel.googlenavdrawermenu.utils.InMemoryDrawerMetrics;
+import org.arasthel.googlenavdrawermenu.views.GoogleNavigationDrawer;
+import org.arasthel.googlenavdrawermenu.views.LabelLayouts;
+import org.arasthel.googlenavdrawermenu.views.NavigationRowView;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.ArrayList;
+
+/**
+ * Benchmarks of the adapter and drawer hot paths for a menu size.
+ */
+public class DrawerBenchmarks {
+
+    public static final int[] SECTION_COUNTS = { 10, 100, 1000 };
+    public static final int[] SEARCH_SECTION_COUNTS = { 1000, 10000 };
+
+    private static final String[] SEARCH_WORDS = { "Música", "Películas", "Fotos", "Ajustes", "Descargas", "Álbumes", "Contactos", "Mensajes" };
+    private static final String SEARCH_QUERY = "musica 12";
+
+    private static final int FRAME_WIDTH = 480;
+    private static final int FRAME_HEIGHT = 800;
+    // A tablet in portrait, where the most rows fit
+    private static final int TALL_FRAME_HEIGHT = 2560;
+    private static final long CHUNK_FRAME_BUDGET_NANOS = 4000000;
+
+    private final Context mContext;
+
+    public DrawerBenchmarks(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return All the benchmarks for all the menu sizes in SECTION_COUNTS
+     */
+    public ArrayList<BenchmarkRunner.Benchmark> getBenchmarks() {
+        ArrayList<BenchmarkRunner.Benchmark> benchmarks = new ArrayList<BenchmarkRunner.Benchmark>();
+        for(int sections : SECTION_COUNTS) {
+            benchmarks.add(getViewFresh(sections, false));
+            benchmarks.add(getViewRecycled(sections, false, false));
+            benchmarks.add(getViewFresh(sections, true));
+            benchmarks.add(getViewRecycled(sections, true, false));
+            benchmarks.add(getViewRecycled(sections, true, true));
+            benchmarks.add(getViewRecycledSteady(sections, false));
+            benchmarks.add(getViewRecycledSteady(sections, true));
+            benchmarks.add(drawLabels(sections, false));
+            benchmarks.add(drawLabels(sections, true));
+            benchmarks.add(setListViewSections(sections));
+            // Bigger menus are diffed in a background thread, out of the measured time
+            if(sections < SectionsDiff.BACKGROUND_DIFF_THRESHOLD) {
+                benchmarks.add(updateListViewSections(sections, false));
+                benchmarks.add(updateListViewSections(sections, true));
+            }
+            benchmarks.add(check(sections));
+            benchmarks.add(checkVisibleRows(sections));
+            benchmarks.add(replaceHeaderAndFooter(sections));
+            benchmarks.add(setSectionBadges(sections));
+        }
+        for(boolean filterBar : new boolean[] { false, true }) {
+            benchmarks.add(drawSlideFrame(false, filterBar));
+            benchmarks.add(drawSlideFrame(true, filterBar));
+        }
+        benchmarks.add(firstListLayout(false));
+        benchmarks.add(firstListLayout(true));
+        benchmarks.add(populateTallList(false));
+        benchmarks.add(populateTallList(true));
+        for(int sections : SEARCH_SECTION_COUNTS) {
+            benchmarks.add(buildSectionIndex(sections));
+            benchmarks.add(searchSectionIndex(sections));
+            benchmarks.add(saveAndRestoreState(sections));
+        }
+        // The attributes come from a layout, so the menu size is the one of its arrays
+        benchmarks.add(configureWithTypedArray("configureWithTypedArray", R.layout.benchmark_drawer));
+        benchmarks.add(configureWithTypedArray("configureWithTypedArray.shared", R.layout.benchmark_drawer_shared));
+        benchmarks.add(inflate("inflate.eager", R.layout.benchmark_drawer));
+        benchmarks.add(inflate("inflate.deferred", R.layout.benchmark_drawer_deferred));
+        benchmarks.add(inflate("inflate.shared", R.layout.benchmark_drawer_shared));
+        return benchmarks;
+    }
+
+    /**
+     * Menu with 90% main and 10% secondary sections, every one with an icon
+     */
+    private static String[] createSections(String prefix, int count) {
+        String[] sections = new String[count];
+        for(int i = 0; i < count; i++) {
+            sections[i] = prefix + " " + i;
+        }
+        return sections;
+    }
+
+    private static int[] createIcons(int count) {
+        int[] icons = new int[count];
+        for(int i = 0; i < count; i++) {
+            icons[i] = android.R.drawable.ic_menu_info_details;
+        }
+        return icons;
+    }
+
+    private static int getMainCount(int sections) {
+        return sections - sections / 10;
+    }
+
+    private GoogleNavigationDrawerAdapter createAdapter(int sections, boolean flatRows) {
+        int mainCount = getMainCount(sections);
+        GoogleNavigationDrawerAdapter adapter = new GoogleNavigationDrawerAdapter(mContext,
+                createSections("Main", mainCount), createSections("Secondary", sections - mainCount),
+                createIcons(mainCount), createIcons(sections - mainCount));
+        adapter.setUseFlatRows(flatRows);
+        return adapter;
+    }
+
+    private GoogleNavigationDrawer createDrawer(int sections) {
+        int mainCount = getMainCount(sections);
+        GoogleNavigationDrawer drawer = new GoogleNavigationDrawer(mContext);
+        drawer.setListViewSections(createSections("Main", mainCount), createSections("Secondary", sections - mainCount),
+                createIcons(mainCount), createIcons(sections - mainCount));
+        return drawer;
+    }
+
+    private static String getRowsName(boolean flatRows) {
+        return flatRows ? "flatRows" : "xmlRows";
+    }
+
+    private BenchmarkRunner.Benchmark getViewFresh(final int sections, final boolean flatRows) {
+        return new BenchmarkRunner.Benchmark("getView.fresh." + getRowsName(flatRows), sections) {
+            private GoogleNavigationDrawerAdapter mAdapter;
+            private ListView mParent;
+
+            @Override
+            public void setUp() {
+                mAdapter = createAdapter(sections, flatRows);
+                mParent = new ListView(mContext);
+            }
+
+            @Override
+            public void run(int iteration) {
+                for(int i = 0; i < mAdapter.getCount(); i++) {
+                    mAdapter.getView(i, null, mParent);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param measured True to report the bind times to an InMemoryDrawerMetrics, to see what
+     *                 measuring them costs
+     */
+    private BenchmarkRunner.Benchmark getViewRecycled(final int sections, final boolean flatRows, final boolean measured) {
+        return new BenchmarkRunner.Benchmark("getView.recycled." + getRowsName(flatRows) + (measured ? ".metrics" : ""), sections) {
+            private GoogleNavigationDrawerAdapter mAdapter;
+            private ListView mParent;
+            // A screen worth of rows of each type, reused like ListView does while scrolling
+            private View[][] mRows = new View[2][8];
+
+            @Override
+            public void setUp() {
+                mAdapter = createAdapter(sections, flatRows);
+                if(measured) {
+                    mAdapter.setMetrics(new InMemoryDrawerMetrics());
+                }
+                mParent = new ListView(mContext);
+                for(int type = 0; type < mRows.length; type++) {
+                    for(int i = 0; i < mRows[type].length; i++) {
+                        mRows[type][i] = mAdapter.createRow(type);
+                    }
+                }
+            }
+
+            @Override
+            public void run(int iteration) {
+                for(int i = 0; i < mAdapter.getCount(); i++) {
+                    View[] rows = mRows[mAdapter.getItemViewType(i)];
+                    mAdapter.getView(i, rows[i % rows.length], mParent);
+                }
+            }
+        };
+    }
+
+    /**
+     * Binds a screen worth of recycled rows again to the sections they show, as every layout pass
+     * of the list does. Nothing changed, so the holders skip every setter and the bind must not
+     * allocate: more than 0 allocations per iteration is reported as a failure.
+     */
+    private BenchmarkRunner.Benchmark getViewRecycledSteady(final int sections, final boolean flatRows) {
+        return new BenchmarkRunner.Benchmark("getView.recycled.steady." + getRowsName(flatRows), sections) {
+            private GoogleNavigationDrawerAdapter mAdapter;
+            private ListView mParent;
+            private View[] mRows;
+
+            @Override
+            public void setUp() {
+                mAdapter = createAdapter(sections, flatRows);
+                mParent = new ListView(mContext);
+                mRows = new View[Math.min(sections, 16)];
+                for(int i = 0; i < mRows.length; i++) {
+                    mRows[i] = mAdapter.getView(i, null, mParent);
+                }
+            }
+
+            @Override
+            public void run(int iteration) {
+                for(int i = 0; i < mRows.length; i++) {
+                    mAdapter.getView(i, mRows[i], mParent);
+                }
+            }
+
+            @Override
+            public double getMaxAllocationsPerIteration() {
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Binds the label of every section to a screen worth of flat rows, checked and unchecked
+     * in turn, and draws them, like scrolling through the menu. Precomputed, the labels are
+     * measured once beforehand and the time it took is reported.
+     */
+    private BenchmarkRunner.Benchmark drawLabels(final int sections, final boolean precomputed) {
+        return new BenchmarkRunner.Benchmark("labels.draw." + (precomputed ? "precomputed" : "measured"), sections) {
+            private static final int ROW_HEIGHT = 48;
+
+            private SectionModel mModel;
+            private LabelLayouts mLayouts;
+            private NavigationRowView[][] mRows = new NavigationRowView[2][8];
+            private Canvas mCanvas;
+
+            @Override
+            public void setUp() {
+                int mainCount = getMainCount(sections);
+                mModel = SectionModel.fromArrays(createSections("Main", mainCount), createSections("Secondary", sections - mainCount),
+                        createIcons(mainCount), createIcons(sections - mainCount));
+                if(precomputed) {
+                    Resources res = mContext.getResources();
+                    mLayouts = LabelLayouts.build(mModel, res.getDimension(R.dimen.main_section_text_size),
+                            res.getDimension(R.dimen.secondary_section_text_size));
+                }
+                for(int type = 0; type < mRows.length; type++) {
+                    for(int i = 0; i < mRows[type].length; i++) {
+                        NavigationRowView row = new NavigationRowView(mContext, type == GoogleNavigationDrawerAdapter.TYPE_SECONDARY);
+                        row.measure(View.MeasureSpec.makeMeasureSpec(FRAME_WIDTH, View.MeasureSpec.EXACTLY),
+                                View.MeasureSpec.makeMeasureSpec(ROW_HEIGHT, View.MeasureSpec.EXACTLY));
+                        row.layout(0, 0, FRAME_WIDTH, ROW_HEIGHT);
+                        mRows[type][i] = row;
+                    }
+                }
+                mCanvas = new Canvas(Bitmap.createBitmap(FRAME_WIDTH, ROW_HEIGHT, Bitmap.Config.ARGB_8888));
+            }
+
+            @Override
+            public void run(int iteration) {
+                for(int i = 0; i < mModel.getCount(); i++) {
+                    NavigationRowView[] rows = mRows[mModel.getType(i)];
+                    NavigationRowView row = rows[i % rows.length];
+                    if(mLayouts != null) {
+                        row.setLabel(mLayouts, i);
+                    } else {
+                        row.setLabel(mModel.getLabel(i));
+                    }
+                    row.setChecked((i + iteration) % 2 == 0);
+                    row.draw(mCanvas);
+                }
+            }
+
+            @Override
+            public void addExtras(BenchmarkRunner.Result result) {
+                if(mLayouts != null) {
+                    result.extras.put("buildMs", mLayouts.getBuildTimeNanos() / 1e6);
+                }
+            }
+        };
+    }
+
+    private BenchmarkRunner.Benchmark setListViewSections(final int sections) {
+        return new BenchmarkRunner.Benchmark("setListViewSections", sections) {
+            private GoogleNavigationDrawer mDrawer;
+            private String[] mMain;
+            private String[] mSecondary;
+            private int[] mMainIcons;
+            private int[] mSecondaryIcons;
+
+            @Override
+            public void setUp() {
+                int mainCount = getMainCount(sections);
+                mDrawer = new GoogleNavigationDrawer(mContext);
+                mMain = createSections("Main", mainCount);
+                mSecondary = createSections("Secondary", sections - mainCount);
+                mMainIcons = createIcons(mainCount);
+                mSecondaryIcons = createIcons(sections - mainCount);
+            }
+
+            @Override
+            public void run(int iteration) {
+                mDrawer.setListViewSections(mMain, mSecondary, mMainIcons, mSecondaryIcons);
+            }
+        };
+    }
+
+    /**
+     * Menu where every section has its own id, with the second one disabled or not and, if
+     * swapped, the second and third sections in the opposite order
+     */
+    private static SectionModel createUpdatedModel(int sections, boolean disabled, boolean swapped) {
+        int mainCount = getMainCount(sections);
+        SectionModel.Builder builder = new SectionModel.Builder();
+        for(int i = 0; i < sections; i++) {
+            int id = swapped && (i == 1 || i == 2) ? 3 - i : i;
+            int type = id < mainCount ? GoogleNavigationDrawerAdapter.TYPE_MAIN : GoogleNavigationDrawerAdapter.TYPE_SECONDARY;
+            builder.addSection(type, id, (id < mainCount ? "Main " : "Secondary ") + id, android.R.drawable.ic_menu_info_details,
+                    !disabled || id != 1, true);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Updates the sections of an open drawer, going back and forth between two versions of them,
+     * with the layout of the next frame if the update requested one. Changed, only the enabled
+     * flag of a section toggles and a single row should be bound again; moved, two sections swap
+     * places and the visible rows are laid out again. The rows bound and the time to diff and
+     * apply each update are reported.
+     */
+    private BenchmarkRunner.Benchmark updateListViewSections(final int sections, final boolean moved) {
+        return new BenchmarkRunner.Benchmark("updateListViewSections." + (moved ? "moved" : "changed"), sections) {
+            private GoogleNavigationDrawer mDrawer;
+            private SectionModel[] mModels;
+            private int mUpdates;
+            private long mRebound;
+            private long mDiffNanos;
+            private long mApplyNanos;
+
+            @Override
+            public void setUp() {
+                mModels = new SectionModel[] {
+                        createUpdatedModel(sections, false, false),
+                        createUpdatedModel(sections, !moved, moved)
+                };
+                mDrawer = new GoogleNavigationDrawer(mContext);
+                mDrawer.setListViewSections(mModels[0]);
+                layOutOpen(mDrawer);
+            }
+
+            @Override
+            public void run(int iteration) {
+                mDrawer.updateListViewSections(mModels[(iteration + 1) % 2]);
+                if(mDrawer.isLayoutRequested()) {
+                    layOut(mDrawer);
+                }
+                SectionsDiff diff = mDrawer.getLastSectionsDiff();
+                mUpdates++;
+                mRebound += diff.getReboundRowCount();
+                mDiffNanos += diff.getDiffTimeNanos();
+                mApplyNanos += diff.getApplyTimeNanos();
+            }
+
+            @Override
+            public void addExtras(BenchmarkRunner.Result result) {
+                int updates = Math.max(1, mUpdates);
+                result.extras.put("rowsBoundPerUpdate", (double) mRebound / updates);
+                result.extras.put("diffMs", mDiffNanos / 1e6 / updates);
+                result.extras.put("applyMs", mApplyNanos / 1e6 / updates);
+            }
+        };
+    }
+
+    private BenchmarkRunner.Benchmark check(final int sections) {
+        return new BenchmarkRunner.Benchmark("check", sections) {
+            private GoogleNavigationDrawer mDrawer;
+
+            @Override
+            public void setUp() {
+                mDrawer = createDrawer(sections);
+            }
+
+            @Override
+            public void run(int iteration) {
+                for(int i = 0; i < sections; i++) {
+                    mDrawer.check(i);
+                }
+            }
+        };
+    }
+
+    private BenchmarkRunner.Benchmark replaceHeaderAndFooter(final int sections) {
+        return new BenchmarkRunner.Benchmark("replaceHeaderAndFooter", sections) {
+            private GoogleNavigationDrawer mDrawer;
+            private View[] mHeaders = new View[2];
+            private View[] mFooters = new View[2];
+
+            @Override
+            public void setUp() {
+                mDrawer = createDrawer(sections);
+                for(int i = 0; i < 2; i++) {
+                    TextView header = new TextView(mContext);
+                    header.setText("Header " + i);
+                    mHeaders[i] = header;
+                    TextView footer = new TextView(mContext);
+                    footer.setText("Footer " + i);
+                    mFooters[i] = footer;
+                }
+            }
+
+            @Override
+            public void run(int iteration) {
+                mDrawer.setMenuHeader(mHeaders[iteration % 2], true);
+                mDrawer.setMenuFooter(mFooters[iteration % 2], true);
+            }
+        };
+    }
+
+    /**
+     * Menu with labels of two words and a number, some with accents
+     */
+    private static SectionModel createSearchableModel(int count) {
+        SectionModel.Builder builder = new SectionModel.Builder();
+        for(int i = 0; i < count; i++) {
+            String label = SEARCH_WORDS[i % SEARCH_WORDS.length] + " " + SEARCH_WORDS[(i / SEARCH_WORDS.length) % SEARCH_WORDS.length] + " " + i;
+            if(i < getMainCount(count)) {
+                builder.addMainSection(label, 0);
+            } else {
+                builder.addSecondarySection(label, 0);
+            }
+        }
+        return builder.build();
+    }
+
+    private BenchmarkRunner.Benchmark buildSectionIndex(final int sections) {
+        return new BenchmarkRunner.Benchmark("sectionIndex.build", sections) {
+            private SectionModel mModel;
+
+            @Override
+            public void setUp() {
+                mModel = createSearchableModel(sections);
+            }
+
+            @Override
+            public void run(int iteration) {
+                new SectionIndex(mModel);
+            }
+        };
+    }
+
+    /**
+     * Every keystroke of a query typed in the filter bar, each search starting from the result
+     * of the previous one
+     */
+    private BenchmarkRunner.Benchmark searchSectionIndex(final int sections) {
+        return new BenchmarkRunner.Benchmark("sectionIndex.search", sections) {
+            private SectionIndex mIndex;
+
+            @Override
+            public void setUp() {
+                mIndex = new SectionIndex(createSearchableModel(sections));
+            }
+
+            @Override
+            public void run(int iteration) {
+                SectionIndex.Result result = null;
+                for(int i = 1; i <= SEARCH_QUERY.length(); i++) {
+                    result = mIndex.search(SEARCH_QUERY.substring(0, i), result);
+                }
+            }
+        };
+    }
+
+    /**
+     * A burst of badge updates, like a sync engine would send. They're only stored and
+     * coalesced here, the visible rows are bound again once in the next frame.
+     */
+    private BenchmarkRunner.Benchmark setSectionBadges(final int sections) {
+        return new BenchmarkRunner.Benchmark("setSectionBadge.burst", sections) {
+            private static final int UPDATES = 1000;
+
+            private GoogleNavigationDrawer mDrawer;
+            private long[] mSectionIds;
+
+            @Override
+            public void setUp() {
+                int mainCount = getMainCount(sections);
+                mDrawer = createDrawer(sections);
+                SectionModel model = SectionModel.fromArrays(createSections("Main", mainCount), createSections("Secondary", sections - mainCount),
+                        createIcons(mainCount), createIcons(sections - mainCount));
+                mSectionIds = new long[sections];
+                for(int i = 0; i < sections; i++) {
+                    mSectionIds[i] = model.getStableId(i);
+                }
+            }
+
+            @Override
+            public void run(int iteration) {
+                for(int i = 0; i < UPDATES; i++) {
+                    mDrawer.setSectionBadge(mSectionIds[i % mSectionIds.length], (iteration + i) % 120);
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds a white content view to the drawer and lays it out open in a FRAME_WIDTH x FRAME_HEIGHT window
+     */
+    private void layOutOpen(GoogleNavigationDrawer drawer) {
+        View content = new View(mContext);
+        content.setBackgroundColor(Color.WHITE);
+        drawer.addView(content, 0, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        // Opened before the first layout, so it's laid out open
+        drawer.openDrawerMenu();
+        layOut(drawer);
+    }
+
+    private static void layOut(GoogleNavigationDrawer drawer) {
+        drawer.measure(View.MeasureSpec.makeMeasureSpec(FRAME_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(FRAME_HEIGHT, View.MeasureSpec.EXACTLY));
+        drawer.layout(0, 0, FRAME_WIDTH, FRAME_HEIGHT);
+    }
+
+    /**
+     * Checks two visible rows in turn in an open drawer, with the layout of the next frame if the
+     * check requested one. Only the two rows should change: the rows bound per check are reported.
+     */
+    private BenchmarkRunner.Benchmark checkVisibleRows(final int sections) {
+        return new BenchmarkRunner.Benchmark("check.visibleRows", sections) {
+            private GoogleNavigationDrawer mDrawer;
+            private InMemoryDrawerMetrics mMetrics = new InMemoryDrawerMetrics();
+
+            @Override
+            public void setUp() {
+                mDrawer = createDrawer(sections);
+                layOutOpen(mDrawer);
+                mDrawer.setMetrics(mMetrics);
+                mMetrics.reset();
+            }
+
+            @Override
+            public void run(int iteration) {
+                mDrawer.check(1 + iteration % 2);
+                if(mDrawer.isLayoutRequested()) {
+                    layOut(mDrawer);
+                }
+            }
+
+            @Override
+            public void addExtras(BenchmarkRunner.Result result) {
+                result.extras.put("rowsBoundPerCheck", (double) mMetrics.getRowBindCount() / Math.max(1, mMetrics.getCheckCount()));
+            }
+        };
+    }
+
+    /**
+     * A frame of the open drawer over a white content view, drawn in software. It can't show the
+     * hardware layer the optimized mode uses on the device, but it shows the cost of drawing the
+     * drawer and how many times each pixel is filled. The filter bar puts the list in a container,
+     * which is where flattening the backgrounds matters.
+     */
+    private BenchmarkRunner.Benchmark drawSlideFrame(final boolean optimized, final boolean filterBar) {
+        final int sections = 100;
+        String name = "slide.frame." + (optimized ? "optimized" : "default") + (filterBar ? ".filterBar" : "");
+        return new BenchmarkRunner.Benchmark(name, sections) {
+            private GoogleNavigationDrawer mDrawer;
+            private OverdrawCanvas mCanvas;
+            private double mOverdraw;
+
+            @Override
+            public void setUp() {
+                mDrawer = createDrawer(sections);
+                mDrawer.setOptimizedSlide(optimized);
+                mDrawer.setFilterBarEnabled(filterBar);
+                layOutOpen(mDrawer);
+                mCanvas = new OverdrawCanvas(Bitmap.createBitmap(FRAME_WIDTH, FRAME_HEIGHT, Bitmap.Config.ARGB_8888));
+            }
+
+            @Override
+            public void run(int iteration) {
+                mCanvas.reset();
+                mDrawer.draw(mCanvas);
+                mOverdraw = mCanvas.getOverdraw();
+            }
+
+            @Override
+            public void addExtras(BenchmarkRunner.Result result) {
+                result.extras.put("overdraw", mOverdraw);
+            }
+        };
+    }
+
+    /**
+     * The first layout of a new list, the one done in the first frame of the open animation
+     * when the list is created on open. Prefetched, the rows of the first screen are created and
+     * bound beforehand, like the drawer does while the user touches its edge. The run measures
+     * both; the time of the layout alone, the time of the prefetch and the rows the layout took
+     * from the prefetched ones or left unused are reported.
+     */
+    private BenchmarkRunner.Benchmark firstListLayout(final boolean prefetched) {
+        final int sections = 100;
+        return new BenchmarkRunner.Benchmark("firstLayout." + (prefetched ? "prefetched" : "default"), sections) {
+            private static final int MAIN_ROW_HEIGHT_DP = 64;
+
+            private InMemoryDrawerMetrics mMetrics = new InMemoryDrawerMetrics();
+            private int mFirstScreenRows;
+            private int mRuns;
+            private long mLayoutNanos;
+            private long mPrefetchNanos;
+
+            @Override
+            public void setUp() {
+                // Main section rows are the tallest, so at least these many rows fit
+                float density = mContext.getResources().getDisplayMetrics().density;
+                mFirstScreenRows = (int) Math.ceil(FRAME_HEIGHT / (MAIN_ROW_HEIGHT_DP * density));
+            }
+
+            @Override
+            public void run(int iteration) {
+                GoogleNavigationDrawerAdapter adapter = createAdapter(sections, false);
+                adapter.setMetrics(mMetrics);
+                ListView list = new ListView(mContext);
+                list.setAdapter(adapter);
+
+                long start = System.nanoTime();
+                if(prefetched) {
+                    for(int i = 0; i < mFirstScreenRows; i++) {
+                        adapter.prefetchRow(i, list);
+                    }
+                }
+                long layoutStart = System.nanoTime();
+                list.measure(View.MeasureSpec.makeMeasureSpec(FRAME_WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(FRAME_HEIGHT, View.MeasureSpec.EXACTLY));
+                list.layout(0, 0, FRAME_WIDTH, FRAME_HEIGHT);
+                long end = System.nanoTime();
+                adapter.releasePrefetchedRows();
+
+                mPrefetchNanos += layoutStart - start;
+                mLayoutNanos += end - layoutStart;
+                mRuns++;
+            }
+
+            @Override
+            public void addExtras(BenchmarkRunner.Result result) {
+                result.extras.put("layoutMs", mLayoutNanos / 1e6 / mRuns);
+                result.extras.put("prefetchMs", mPrefetchNanos / 1e6 / mRuns);
+                result.extras.put("prefetchHits", (double) mMetrics.getPrefetchHitCount() / mRuns);
+                result.extras.put("prefetchWasted", (double) mMetrics.getPrefetchWasteCount() / mRuns);
+            }
+        };
+    }
+
+    /**
+     * Populates a list as tall as a tablet screen with new sections, all its rows in the frame of
+     * its layout or, chunked, like the chunked first render: rows created and bound within the
+     * frame budget each frame and the layout in the last one. The run measures all the frames;
+     * the longest one and the number of frames are reported.
+     */
+    private BenchmarkRunner.Benchmark populateTallList(final boolean chunked) {
+        final int sections = 200;
+        return new BenchmarkRunner.Benchmark("population.tall." + (chunked ? "chunked" : "default"), sections) {
+            private static final int MAIN_ROW_HEIGHT_DP = 64;
+
+            private int mFirstScreenRows;
+            private int mRuns;
+            private long mLongestFrameNanos;
+            private int mFrames;
+
+            @Override
+            public void setUp() {
+                float density = mContext.getResources().getDisplayMetrics().density;
+                mFirstScreenRows = Math.min(sections, (int) Math.ceil(TALL_FRAME_HEIGHT / (MAIN_ROW_HEIGHT_DP * density)));
+            }
+
+            @Override
+            public void run(int iteration) {
+                GoogleNavigationDrawerAdapter adapter = createAdapter(sections, false);
+                ListView list = new ListView(mContext);
+                list.setAdapter(adapter);
+
+                long longest = 0;
+                if(chunked) {
+                    int position = 0;
+                    while(position < mFirstScreenRows) {
+                        long start = System.nanoTime();
+                        while(position < mFirstScreenRows && System.nanoTime() - start < CHUNK_FRAME_BUDGET_NANOS) {
+                            adapter.prefetchRow(position++, list);
+                        }
+                        longest = Math.max(longest, System.nanoTime() - start);
+                        mFrames++;
+                    }
+                }
+                long start = System.nanoTime();
+                list.measure(View.MeasureSpec.makeMeasureSpec(FRAME_WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(TALL_FRAME_HEIGHT, View.MeasureSpec.EXACTLY));
+                list.layout(0, 0, FRAME_WIDTH, TALL_FRAME_HEIGHT);
+                longest = Math.max(longest, System.nanoTime() - start);
+                mFrames++;
+                adapter.releasePrefetchedRows();
+
+                mLongestFrameNanos = Math.max(mLongestFrameNanos, longest);
+                mRuns++;
+            }
+
+            @Override
+            public void addExtras(BenchmarkRunner.Result result) {
+                result.extras.put("longestFrameMs", mLongestFrameNanos / 1e6);
+                result.extras.put("frames", (double) mFrames / mRuns);
+            }
+        };
+    }
+
+    /**
+     * Saves the state of a scrolled drawer with badges, parcels it like the activity would and
+     * restores it into another drawer with the same sections, with the layout that follows.
+     * The size of the parcel is reported.
+     */
+    private BenchmarkRunner.Benchmark saveAndRestoreState(final int sections) {
+        return new BenchmarkRunner.Benchmark("savedState.restore", sections) {
+            private static final int DRAWER_ID = 1;
+
+            private GoogleNavigationDrawer mSource;
+            private GoogleNavigationDrawer mTarget;
+            private SparseArray<Parcelable> mContainer = new SparseArray<Parcelable>();
+            private int mParcelSize;
+
+            @Override
+            public void setUp() {
+                mSource = createDrawer(sections);
+                mSource.setId(DRAWER_ID);
+                layOutOpen(mSource);
+                SectionModel model = SectionModel.fromArrays(createSections("Main", getMainCount(sections)), createSections("Secondary", sections - getMainCount(sections)),
+                        createIcons(getMainCount(sections)), createIcons(sections - getMainCount(sections)));
+                for(int i = 0; i < sections; i += 10) {
+                    mSource.setSectionBadge(model.getStableId(i), i % 120 + 1);
+                }
+                mSource.check(sections / 2);
+                layOut(mSource);
+
+                mTarget = createDrawer(sections);
+                mTarget.setId(DRAWER_ID);
+                layOutOpen(mTarget);
+            }
+
+            @Override
+            public void run(int iteration) {
+                mContainer.clear();
+                mSource.saveHierarchyState(mContainer);
+                Parcel parcel = Parcel.obtain();
+                parcel.writeParcelable(mContainer.get(DRAWER_ID), 0);
+                mParcelSize = parcel.dataSize();
+                parcel.setDataPosition(0);
+                mContainer.put(DRAWER_ID, parcel.readParcelable(GoogleNavigationDrawer.class.getClassLoader()));
+                parcel.recycle();
+                mTarget.restoreHierarchyState(mContainer);
+                layOut(mTarget);
+            }
+
+            @Override
+            public void addExtras(BenchmarkRunner.Result result) {
+                result.extras.put("parcelBytes", (double) mParcelSize);
+            }
+        };
+    }
+
+    /**
+     * Reading the attributes of a drawer layout. With a shared model the sections are only read
+     * from resources the first time, every other drawer of the app takes them from the registry.
+     */
+    private BenchmarkRunner.Benchmark configureWithTypedArray(String name, final int layoutId) {
+        return new BenchmarkRunner.Benchmark(name, getLayoutSections()) {
+            private GoogleNavigationDrawer mDrawer;
+            private AttributeSet mAttrs;
+
+            @Override
+            public void setUp() {
+                mDrawer = new GoogleNavigationDrawer(mContext);
+                XmlResourceParser parser = mContext.getResources().getLayout(layoutId);
+                try {
+                    int event;
+                    do {
+                        event = parser.next();
+                    } while(event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT);
+                } catch (Exception e) {
+                    throw new RuntimeException("Couldn't parse the drawer layout", e);
+                }
+                mAttrs = Xml.asAttributeSet(parser);
+            }
+
+            @Override
+            public void run(int iteration) {
+                // configureWithTypedArray recycles the TypedArray itself
+                TypedArray a = mContext.obtainStyledAttributes(mAttrs, R.styleable.GoogleNavigationDrawer);
+                mDrawer.configureWithTypedArray(a);
+            }
+        };
+    }
+
+    /**
+     * Inflation of a whole drawer, the cost paid while the activity starts. The deferred layout
+     * moves the creation of the ListView and its resources to the first time it's opened.
+     */
+    private BenchmarkRunner.Benchmark inflate(String name, final int layoutId) {
+        return new BenchmarkRunner.Benchmark(name, getLayoutSections()) {
+            private LayoutInflater mInflater;
+
+            @Override
+            public void setUp() {
+                mInflater = LayoutInflater.from(mContext);
+            }
+
+            @Override
+            public void run(int iteration) {
+                mInflater.inflate(layoutId, null);
+            }
+        };
+    }
+
+    private int getLayoutSections() {
+        return mContext.getResources().getStringArray(R.array.benchmark_main_sections).length
+                + mContext.getResources().getStringArray(R.array.benchmark_secondary_sections).length;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.benchmark;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ListView;
+
+import org.arasthel.googlenavdrawermenu.adapters.GoogleNavigationDrawerAdapter;
+import org.arasthel.googlenavdrawermenu.adapters.RecycledRowPool;
+import org.arasthel.googlenavdrawermenu.utils.DrawerMetrics;
+import org.arasthel.googlenavdrawermenu.utils.InMemoryDrawerMetrics;
+import org.arasthel.googlenavdrawermenu.views.GoogleNavigationDrawer;
+
+/**
+ * Flings the menu of an open drawer shown on screen with synthetic touch events and counts the
+ * frames drawn until it stops, with the FrameMonitor the drawer uses for its DrawerMetrics.
+ * Before every fling the sections are set again, so the rows come from the RecycledRowPool or,
+ * without it, are inflated during the fling.
+ *
+ * Unlike the BenchmarkRunner benchmarks it needs real frames, so it runs asynchronously, and
+ * FrameMonitor needs Jelly Bean.
+ */
+public class FlingBenchmark {
+
+    public static final int SECTIONS = 150;
+    public static final int FLINGS = 5;
+
+    private static final long FLING_TIMEOUT_MILLIS = 5000;
+    private static final long POLL_INTERVAL_MILLIS = 100;
+    private static final int TOUCH_MOVES = 5;
+    private static final long TOUCH_MOVE_MILLIS = 10;
+
+    public interface Callback {
+
+        public void onFinished(BenchmarkRunner.Result result);
+
+    }
+
+    private final Context mContext;
+    private final boolean mScrollingCache;
+    private final boolean mRowPool;
+    private final Handler mHandler = new Handler();
+    private final InMemoryDrawerMetrics mMetrics = new InMemoryDrawerMetrics();
+
+    private FrameLayout mContainer;
+    private Callback mCallback;
+    private GoogleNavigationDrawer mDrawer;
+    private ListView mListView;
+    private String[] mMain;
+    private String[] mSecondary;
+
+    private BenchmarkRunner.Result mResult;
+    private int mFling;
+    private int mFrameCount;
+    private long mFrameNanos;
+    private long mFlingStart;
+    private long mAllocations;
+
+    /**
+     * @param scrollingCache True to enable the scrolling cache the drawer disables in its list
+     * @param rowPool False to keep no rows in the RecycledRowPool
+     */
+    public FlingBenchmark(Context context, boolean scrollingCache, boolean rowPool) {
+        mContext = context;
+        mScrollingCache = scrollingCache;
+        mRowPool = rowPool;
+    }
+
+    public String getName() {
+        return "list.fling." + (mScrollingCache ? "scrollingCache" : "noScrollingCache") + (mRowPool ? ".rowPool" : ".noRowPool");
+    }
+
+    /**
+     * Shows the drawer in the container and starts flinging it
+     * @param container Where the drawer is shown while it runs. It's removed afterwards.
+     * @param callback Called on the UI thread with the result
+     */
+    public void run(FrameLayout container, Callback callback) {
+        mContainer = container;
+        mCallback = callback;
+        mResult = new BenchmarkRunner.Result();
+        mResult.name = getName();
+        mResult.sections = SECTIONS;
+        mResult.minNanos = Long.MAX_VALUE;
+
+        int mainCount = SECTIONS - SECTIONS / 10;
+        mMain = new String[mainCount];
+        for(int i = 0; i < mMain.length; i++) {
+            mMain[i] = "Main " + i;
+        }
+        mSecondary = new String[SECTIONS - mainCount];
+        for(int i = 0; i < mSecondary.length; i++) {
+            mSecondary[i] = "Secondary " + i;
+        }
+
+        mDrawer = new GoogleNavigationDrawer(mContext);
+        View content = new View(mContext);
+        content.setBackgroundColor(Color.WHITE);
+        mDrawer.addView(content, 0, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        mDrawer.setListViewSections(mMain, mSecondary, null, null);
+        mDrawer.setMetrics(mMetrics);
+        if(!mRowPool) {
+            RecycledRowPool pool = mDrawer.getRecycledRowPool();
+            pool.setMaxRecycledRows(GoogleNavigationDrawerAdapter.TYPE_MAIN, 0);
+            pool.setMaxRecycledRows(GoogleNavigationDrawerAdapter.TYPE_SECONDARY, 0);
+        }
+        mDrawer.openDrawerMenu();
+        mContainer.addView(mDrawer, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+        mFling = 0;
+        mHandler.post(mStartFling);
+    }
+
+    private static ListView findListView(View view) {
+        if(view instanceof ListView) {
+            return (ListView) view;
+        }
+        if(view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for(int i = 0; i < group.getChildCount(); i++) {
+                ListView listView = findListView(group.getChildAt(i));
+                if(listView != null) {
+                    return listView;
+                }
+            }
+        }
+        return null;
+    }
+
+    private final Runnable mStartFling = new Runnable() {
+        @Override
+        public void run() {
+            // A new adapter, so the rows of the fling come from the pool or are inflated
+            mDrawer.setListViewSections(mMain, mSecondary, null, null);
+            mHandler.post(mFlingList);
+        }
+    };
+
+    private final Runnable mFlingList = new Runnable() {
+        @Override
+        @SuppressWarnings("deprecation")
+        public void run() {
+            if(mFling == 0) {
+                // The list may be created once the drawer is laid out
+                mListView = findListView(mDrawer);
+                mListView.setScrollingCacheEnabled(mScrollingCache);
+                // Only what happens from the first fling on
+                mMetrics.reset();
+            }
+            mFrameCount = mMetrics.getFrameCount(DrawerMetrics.FRAMES_LIST_FLING);
+            mFrameNanos = mMetrics.getFrameNanos(DrawerMetrics.FRAMES_LIST_FLING);
+            mFlingStart = SystemClock.uptimeMillis();
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            dispatchFling();
+            mHandler.postDelayed(mWaitForFling, POLL_INTERVAL_MILLIS);
+        }
+    };
+
+    /**
+     * Drags the list up from its bottom to its top in a few quick moves and lifts the finger
+     */
+    private void dispatchFling() {
+        float x = mListView.getWidth() / 2f;
+        float startY = mListView.getHeight() * 0.9f;
+        float endY = mListView.getHeight() * 0.1f;
+        long downTime = SystemClock.uptimeMillis();
+        dispatchTouch(downTime, downTime, MotionEvent.ACTION_DOWN, x, startY);
+        for(int i = 1; i <= TOUCH_MOVES; i++) {
+            float y = startY + (endY - startY) * i / TOUCH_MOVES;
+            dispatchTouch(downTime, downTime + i * TOUCH_MOVE_MILLIS, MotionEvent.ACTION_MOVE, x, y);
+        }
+        dispatchTouch(downTime, downTime + TOUCH_MOVES * TOUCH_MOVE_MILLIS, MotionEvent.ACTION_UP, x, endY);
+    }
+
+    private void dispatchTouch(long downTime, long eventTime, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+        mListView.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    private final Runnable mWaitForFling = new Runnable() {
+        @Override
+        @SuppressWarnings("deprecation")
+        public void run() {
+            // The frames are reported when the list stops
+            int frames = mMetrics.getFrameCount(DrawerMetrics.FRAMES_LIST_FLING) - mFrameCount;
+            if(frames == 0 && SystemClock.uptimeMillis() - mFlingStart < FLING_TIMEOUT_MILLIS) {
+                mHandler.postDelayed(this, POLL_INTERVAL_MILLIS);
+                return;
+            }
+            mAllocations += Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+            if(frames > 0) {
+                long frameNanos = (mMetrics.getFrameNanos(DrawerMetrics.FRAMES_LIST_FLING) - mFrameNanos) / frames;
+                mResult.minNanos = Math.min(mResult.minNanos, frameNanos);
+                mResult.maxNanos = Math.max(mResult.maxNanos, frameNanos);
+            }
+            mFling++;
+            if(mFling < FLINGS) {
+                mHandler.post(mStartFling);
+            } else {
+                finish();
+            }
+        }
+    };
+
+    private void finish() {
+        int frames = mMetrics.getFrameCount(DrawerMetrics.FRAMES_LIST_FLING);
+        mResult.iterations = frames;
+        mResult.meanNanos = frames == 0 ? 0 : mMetrics.getFrameNanos(DrawerMetrics.FRAMES_LIST_FLING) / frames;
+        if(frames == 0) {
+            mResult.minNanos = 0;
+        }
+        mResult.allocationsPerIteration = frames == 0 ? 0 : (double) mAllocations / frames;
+        mResult.extras.put("framesPerFling", (double) frames / FLINGS);
+        mResult.extras.put("slowFramesPerFling", (double) mMetrics.getSlowFrameCount(DrawerMetrics.FRAMES_LIST_FLING) / FLINGS);
+        mResult.extras.put("droppedFramesPerFling", (double) mMetrics.getDroppedFrameCount(DrawerMetrics.FRAMES_LIST_FLING) / FLINGS);
+        mResult.extras.put("rowsInflatedPerFling", (double) mMetrics.getRowInflationCount() / FLINGS);
+
+        mDrawer.setMetrics(null);
+        mContainer.removeView(mDrawer);
+        mDrawer = null;
+        mListView = null;
+        mCallback.onFinished(mResult);
+    }
+}
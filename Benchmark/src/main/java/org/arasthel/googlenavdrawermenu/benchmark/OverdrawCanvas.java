@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Canvas that adds up the area filled by rectangles, colors and bitmaps, i.e. by backgrounds,
+ * dividers and icons. The filled area divided by the area of the bitmap is the overdraw: 1 means
+ * every pixel was filled once. Text isn't counted.
+ *
+ * Only translations are taken into account, which is all the drawer uses.
+ */
+public class OverdrawCanvas extends Canvas {
+
+    private final Rect mClip = new Rect();
+    private final Rect mArea = new Rect();
+    private long mFilledPixels = 0;
+
+    public OverdrawCanvas(Bitmap bitmap) {
+        super(bitmap);
+    }
+
+    public void reset() {
+        mFilledPixels = 0;
+    }
+
+    /**
+     * @return The filled area divided by the area of the bitmap
+     */
+    public double getOverdraw() {
+        return (double) mFilledPixels / ((long) getWidth() * getHeight());
+    }
+
+    private void fill(float left, float top, float right, float bottom) {
+        if(!getClipBounds(mClip)) {
+            return;
+        }
+        mArea.set((int) left, (int) top, (int) Math.ceil(right), (int) Math.ceil(bottom));
+        if(mArea.intersect(mClip)) {
+            mFilledPixels += (long) mArea.width() * mArea.height();
+        }
+    }
+
+    private void fillClip() {
+        if(getClipBounds(mClip)) {
+            mFilledPixels += (long) mClip.width() * mClip.height();
+        }
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        fill(left, top, right, bottom);
+        super.drawRect(left, top, right, bottom, paint);
+    }
+
+    @Override
+    public void drawRect(Rect r, Paint paint) {
+        fill(r.left, r.top, r.right, r.bottom);
+        super.drawRect(r, paint);
+    }
+
+    @Override
+    public void drawRect(RectF r, Paint paint) {
+        fill(r.left, r.top, r.right, r.bottom);
+        super.drawRect(r, paint);
+    }
+
+    @Override
+    public void drawColor(int color) {
+        fillClip();
+        super.drawColor(color);
+    }
+
+    @Override
+    public void drawPaint(Paint paint) {
+        fillClip();
+        super.drawPaint(paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        fill(left, top, left + bitmap.getWidth(), top + bitmap.getHeight());
+        super.drawBitmap(bitmap, left, top, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        fill(dst.left, dst.top, dst.right, dst.bottom);
+        super.drawBitmap(bitmap, src, dst, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        fill(dst.left, dst.top, dst.right, dst.bottom);
+        super.drawBitmap(bitmap, src, dst, paint);
+    }
+}
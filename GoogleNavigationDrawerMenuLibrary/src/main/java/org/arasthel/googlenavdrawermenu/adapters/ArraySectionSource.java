@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory {@link SectionSource} serving the pages from a SectionModel. Useful as a fake of a
+ * remote source: it counts the pages loaded and can take some time to load each one.
+ */
+public class ArraySectionSource implements SectionSource {
+
+    private final SectionModel mModel;
+    private volatile long mLoadDelayMillis = 0;
+    private final AtomicInteger mLoadCount = new AtomicInteger();
+
+    public ArraySectionSource(SectionModel model) {
+        mModel = model;
+    }
+
+    public ArraySectionSource(String[] mainSections, String[] secondarySections, int[] mainIcons, int[] secondaryIcons) {
+        this(SectionModel.fromArrays(mainSections, secondarySections, mainIcons, secondaryIcons));
+    }
+
+    @Override
+    public int getCount() {
+        return mModel.getCount();
+    }
+
+    @Override
+    public int getMainCount() {
+        return mModel.getMainCount();
+    }
+
+    @Override
+    public SectionModel getSections(int start, int count) {
+        if(mLoadDelayMillis > 0) {
+            try {
+                Thread.sleep(mLoadDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        mLoadCount.incrementAndGet();
+        return mModel.getRange(start, count);
+    }
+
+    /**
+     * Make every page take some time to load, like a remote source would
+     * @param loadDelayMillis The time, in milliseconds
+     */
+    public void setLoadDelayMillis(long loadDelayMillis) {
+        mLoadDelayMillis = loadDelayMillis;
+    }
+
+    /**
+     * @return Number of pages loaded so far
+     */
+    public int getLoadCount() {
+        return mLoadCount.get();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+/**
+ * Gives the children of the expandable groups of a {@link SectionModel}, so they're only created
+ * when a group is expanded for the first time.
+ */
+public interface ChildProvider {
+
+    /**
+     * Called once per group, the first time it's expanded. Called from a background thread if
+     * the adapter loads children in background, from the UI thread otherwise.
+     * @param groupId The stable id of the group
+     * @return The children, as the sections of a model, or null if it has none
+     */
+    public SectionModel getChildren(long groupId);
+}
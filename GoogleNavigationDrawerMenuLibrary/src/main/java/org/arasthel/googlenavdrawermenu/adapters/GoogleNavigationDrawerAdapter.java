@@ -16,17 +16,30 @@ package org.arasthel.googlenavdrawermenu.adapters;
 
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.graphics.Typeface;
+import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
+import android.support.v4.util.LongSparseArray;
+import android.text.TextUtils;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
+import android.widget.Checkable;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
+import android.widget.TextView;
 
 import org.arasthel.googlenavdrawermenu.R;
-import org.arasthel.googlenavdrawermenu.views.CheckableRelativeLayout;
+import org.arasthel.googlenavdrawermenu.utils.BackgroundWorker;
+import org.arasthel.googlenavdrawermenu.utils.DrawableCache;
+import org.arasthel.googlenavdrawermenu.utils.DrawerMetrics;
+import org.arasthel.googlenavdrawermenu.utils.IconLoader;
+import org.arasthel.googlenavdrawermenu.utils.IconSource;
 import org.arasthel.googlenavdrawermenu.views.CheckedTextView;
+import org.arasthel.googlenavdrawermenu.views.LabelLayouts;
+import org.arasthel.googlenavdrawermenu.views.NavigationRowView;
+
+import java.util.Arrays;
 
 /**
  * Created by Arasthel on 14/04/14.
@@ -34,12 +47,10 @@ import org.arasthel.googlenavdrawermenu.views.CheckedTextView;
 public class GoogleNavigationDrawerAdapter extends BaseAdapter {
 
     public static final int TYPE_MAIN = 0;
-    private static final int TYPE_SECONDARY = 1;
+    public static final int TYPE_SECONDARY = 1;
+    public static final int TYPE_CHILD = 2;
 
-    private String[] mMainSections;
-    private String[] mSecondarySections;
-    private int[] mMainSectionsDrawableIds;
-    private int[] mSecondarySectionsDrawableIds;
+    private SectionModel mModel = SectionModel.EMPTY;
 
     private int mainDividerHeight = -1;
     private int secondaryDividerHeight = -1;
@@ -55,16 +66,72 @@ public class GoogleNavigationDrawerAdapter extends BaseAdapter {
 
     private Context mContext;
 
+    private RecycledRowPool mRowPool;
+    // Rows created and bound ahead of time, by position, until getView asks for them
+    private SparseArray<View> mPrefetchedRows;
+
+    private boolean mUseFlatRows = false;
+
+    private boolean mPrecomputeLabels = false;
+    private LabelLayouts mLabelLayouts;
+
+    private DrawableCache mDrawableCache;
+
+    private IconLoader mIconLoader;
+    private int mIconPlaceholderResId = -1;
+    private int mMainIconSize = -1;
+    private int mSecondaryIconSize = -1;
+
+    // Changes whenever an option that affects how icons are bound changes. Taken from a counter
+    // shared by all the adapters, so rows coming from another adapter through the RecycledRowPool
+    // never look bound by this one.
+    private static int sLastBindGeneration = 0;
+    private int mBindGeneration = nextBindGeneration();
+
+    private ChildProvider mChildProvider;
+    private boolean mLoadChildrenInBackground = false;
+    private int mChildIndent = -1;
+
+    // Children loaded or set so far and the expanded groups, by the stable id of the group. Keyed
+    // by primitive longs, so looking a group up doesn't box its id.
+    private LongSparseArray<SectionModel> mChildren = new LongSparseArray<SectionModel>();
+    private LongSparseArray<Boolean> mExpandedGroupIds = new LongSparseArray<Boolean>();
+    private LongSparseArray<Boolean> mLoadingGroupIds = new LongSparseArray<Boolean>();
+
+    /**
+     * Expanded groups with children, sorted by position: the position of the group in the model
+     * and in the list, its children and the number of child rows up to and including its own.
+     * List positions are mapped to sections with a binary search on mExpandedListPositions.
+     */
+    private int[] mExpandedSections = new int[0];
+    private int[] mExpandedListPositions = new int[0];
+    private int[] mChildRowsUpTo = new int[0];
+    private SectionModel[] mExpandedChildren = new SectionModel[0];
+    private int mChildRowCount = 0;
+
+    private int mCheckedPosition = SectionModel.NO_POSITION;
+
+    // When set, sections come from it instead of mModel
+    private SectionPager mPager;
+    // Pages loaded while binding a row are notified once the layout pass is over
+    private boolean mBindingPagedRow = false;
+    private boolean mPageNotificationPosted = false;
+
+    private SectionBadges mBadges;
+
+    private DrawerMetrics mMetrics = DrawerMetrics.NONE;
+
     public GoogleNavigationDrawerAdapter(Context context) {
         mContext = context;
     }
 
     public GoogleNavigationDrawerAdapter(Context context, String[] mainSections, String[] secondarySections, int[] mainSectionsDrawableIds, int[] secondarySectionsDrawableIds) {
+        this(context, SectionModel.fromArrays(mainSections, secondarySections, mainSectionsDrawableIds, secondarySectionsDrawableIds));
+    }
+
+    public GoogleNavigationDrawerAdapter(Context context, SectionModel model) {
         this(context);
-        mMainSections = mainSections;
-        mSecondarySections = secondarySections;
-        mMainSectionsDrawableIds = mainSectionsDrawableIds;
-        mSecondarySectionsDrawableIds = secondarySectionsDrawableIds;
+        mModel = model;
     }
 
     public GoogleNavigationDrawerAdapter(Context context, String[] mainSections, String[] secondarySections, int[] mainSectionsDrawableIds, int[] secondarySectionsDrawableIds, int mainBackResId, int secondaryBackResId) {
@@ -75,227 +142,1197 @@ public class GoogleNavigationDrawerAdapter extends BaseAdapter {
 
     @Override
     public int getItemViewType(int position) {
-        return (position >= mMainSections.length) ? TYPE_SECONDARY : TYPE_MAIN;
+        if(mPager != null) {
+            return mPager.getType(position);
+        }
+        SectionModel model = getRowModel(position);
+        return model == mModel ? mModel.getType(getRowIndex(position)) : TYPE_CHILD;
     }
 
     @Override
     public int getViewTypeCount() {
-        return 2;
+        return 3;
     }
 
     @Override
     public int getCount() {
-        int count = 0;
-        if(mMainSections != null) {
-            count += mMainSections.length;
-        }
-        if(mSecondarySections != null) {
-            count += mSecondarySections.length;
+        if(mPager != null) {
+            return mPager.getCount();
         }
-        return count;
+        return mModel.getCount() + mChildRowCount;
     }
 
     @Override
     public Object getItem(int i) {
-        if(i >= mMainSections.length && mSecondarySections != null) {
-            return mSecondarySections[i - mMainSections.length];
-        } else {
-            return mMainSections[i];
-        }
+        return getRowModel(i).getLabel(getRowIndex(i));
     }
 
     @Override
     public long getItemId(int i) {
-        return i;
+        if(mPager != null && !mPager.isLoaded(i)) {
+            return SectionModel.NO_STABLE_ID;
+        }
+        return getRowModel(i).getStableId(getRowIndex(i));
     }
 
-    @TargetApi(16)
+    /**
+     * Not with a SectionPager: the rows that aren't loaded yet all share NO_STABLE_ID, and any
+     * other id could clash with the ids of real sections
+     */
     @Override
-    public View getView(int i, View view, ViewGroup viewGroup) {
-        int icon = -1;
-        switch (getItemViewType(i)) {
-            case TYPE_MAIN:
-                PrimaryHolder primaryHolder;
-                if(view == null) {
-                    view = View.inflate(mContext, R.layout.main_navigation_item, null);
-                    view.setBackgroundResource(mMainBackResId);
-                    primaryHolder = new PrimaryHolder();
-                    primaryHolder.primaryTextView = (CheckedTextView) view.findViewById(android.R.id.text1);
-                    primaryHolder.primaryImageView = (ImageView) view.findViewById(android.R.id.icon);
-                    primaryHolder.bottomDivider = view.findViewById(R.id.google_nav_drawer_divider_bottom);
-                    if(mainDividerHeight != -1) {
-                        ((RelativeLayout.LayoutParams) primaryHolder.bottomDivider.getLayoutParams()).height = mainDividerHeight;
-                    }
+    public boolean hasStableIds() {
+        return mPager == null;
+    }
 
-                    if(mainDividerColor != -1) {
-                        primaryHolder.bottomDivider.setBackgroundColor(mainDividerColor);
-                    }
+    /**
+     * @param id A stable id returned by getItemId
+     * @return The position of the section with this id or SectionModel.NO_POSITION
+     */
+    public int getPositionForId(long id) {
+        if(mPager != null) {
+            return mPager.getPosition(id);
+        }
+        int section = mModel.getPosition(id);
+        if(section != SectionModel.NO_POSITION) {
+            return section + getChildRowsBefore(section);
+        }
+        for(int i = 0; i < mExpandedChildren.length; i++) {
+            int child = mExpandedChildren[i].getPosition(id);
+            if(child != SectionModel.NO_POSITION) {
+                return mExpandedListPositions[i] + 1 + child;
+            }
+        }
+        return SectionModel.NO_POSITION;
+    }
+
+    @Override
+    public boolean areAllItemsEnabled() {
+        // Placeholder rows are disabled
+        if(mPager != null || mModel.hasDisabledSections()) {
+            return false;
+        }
+        for(SectionModel children : mExpandedChildren) {
+            if(children.hasDisabledSections()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-                    if(mainDividerDrawable != null) {
-                        int sdk = android.os.Build.VERSION.SDK_INT;
-                        if(sdk < android.os.Build.VERSION_CODES.JELLY_BEAN) {
-                            primaryHolder.bottomDivider.setBackgroundDrawable(mainDividerDrawable);
-                        } else {
-                            primaryHolder.bottomDivider.setBackground(mainDividerDrawable);
+    @Override
+    public boolean isEnabled(int position) {
+        return getRowModel(position).isEnabled(getRowIndex(position));
+    }
+
+    /**
+     * Set the checked row. It's kept here instead of in the ListView, so checking a section
+     * doesn't lay out the whole list again: the drawer updates the visible rows that changed and
+     * the rest are checked or unchecked when they're bound.
+     * @param position The position of the row or SectionModel.NO_POSITION
+     */
+    public void setCheckedPosition(int position) {
+        mCheckedPosition = position;
+    }
+
+    /**
+     * @return The position of the checked row or SectionModel.NO_POSITION
+     */
+    public int getCheckedPosition() {
+        return mCheckedPosition;
+    }
+
+    /**
+     * @return true if the section at this position stays checked after being clicked
+     */
+    public boolean isCheckable(int position) {
+        return getRowModel(position).isCheckable(getRowIndex(position));
+    }
+
+    /**
+     * @return The index of the last expanded group at or before this list position or -1
+     */
+    private int findExpandedGroup(int position) {
+        int low = 0;
+        int high = mExpandedListPositions.length - 1;
+        int found = -1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            if(mExpandedListPositions[middle] <= position) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The model holding the row at this list position: the section model or the
+     * children of an expanded group
+     */
+    private SectionModel getRowModel(int position) {
+        if(mPager != null) {
+            return mPager.getModel(position);
+        }
+        int group = findExpandedGroup(position);
+        if(group != -1) {
+            int offset = position - mExpandedListPositions[group];
+            if(offset > 0 && offset <= mExpandedChildren[group].getCount()) {
+                return mExpandedChildren[group];
+            }
+        }
+        return mModel;
+    }
+
+    /**
+     * @return The index of the row at this list position in the model returned by getRowModel
+     */
+    private int getRowIndex(int position) {
+        if(mPager != null) {
+            return mPager.getIndex(position);
+        }
+        int group = findExpandedGroup(position);
+        if(group == -1) {
+            return position;
+        }
+        int offset = position - mExpandedListPositions[group];
+        if(offset == 0) {
+            return mExpandedSections[group];
+        }
+        if(offset <= mExpandedChildren[group].getCount()) {
+            return offset - 1;
+        }
+        return position - mChildRowsUpTo[group];
+    }
+
+    private int getChildRowsBefore(int section) {
+        int low = 0;
+        int high = mExpandedSections.length - 1;
+        int found = -1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            if(mExpandedSections[middle] < section) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found == -1 ? 0 : mChildRowsUpTo[found];
+    }
+
+    /**
+     * @return The position of the section in the SectionModel or SectionModel.NO_POSITION if
+     * the row at this list position is a child of a group
+     */
+    public int getSectionPosition(int position) {
+        if(mPager != null) {
+            // Paged sections can't be groups
+            return SectionModel.NO_POSITION;
+        }
+        return getRowModel(position) == mModel ? getRowIndex(position) : SectionModel.NO_POSITION;
+    }
+
+    /**
+     * @return true if the row at this list position is an expandable group
+     */
+    public boolean isGroup(int position) {
+        int section = getSectionPosition(position);
+        return section != SectionModel.NO_POSITION && mModel.isGroup(section);
+    }
+
+    /**
+     * @return true if the row at this list position is a group and it's expanded, even if its
+     * children are still being loaded
+     */
+    public boolean isGroupExpanded(int position) {
+        return isGroup(position) && mExpandedGroupIds.indexOfKey(mModel.getStableId(getSectionPosition(position))) >= 0;
+    }
+
+    /**
+     * Shows the children of the group at this list position below it. The first time, they're
+     * asked to the ChildProvider, unless they were given with setChildren. Only the group rows
+     * change: the other rows keep their stable ids, so the ListView keeps its scroll position
+     * and rebinds them without inflating anything.
+     * @param position The list position of the group
+     */
+    public void expandGroup(int position) {
+        if(!isGroup(position)) {
+            return;
+        }
+        long groupId = mModel.getStableId(getSectionPosition(position));
+        if(mExpandedGroupIds.indexOfKey(groupId) >= 0) {
+            return;
+        }
+        mExpandedGroupIds.put(groupId, Boolean.TRUE);
+        if(mChildren.indexOfKey(groupId) >= 0) {
+            onExpansionChanged();
+        } else {
+            loadChildren(groupId);
+        }
+    }
+
+    /**
+     * Hides the children of the group at this list position. They're kept, so expanding it
+     * again doesn't load them again.
+     * @param position The list position of the group
+     */
+    public void collapseGroup(int position) {
+        if(!isGroup(position)) {
+            return;
+        }
+        long groupId = mModel.getStableId(getSectionPosition(position));
+        if(mExpandedGroupIds.indexOfKey(groupId) >= 0) {
+            mExpandedGroupIds.remove(groupId);
+            onExpansionChanged();
+        }
+    }
+
+    /**
+     * Expands the group at this list position if it's collapsed and collapses it otherwise
+     * @param position The list position of the group
+     */
+    public void toggleGroup(int position) {
+        if(isGroupExpanded(position)) {
+            collapseGroup(position);
+        } else {
+            expandGroup(position);
+        }
+    }
+
+    /**
+     * @return The stable ids of the expanded groups, including the ones that aren't in the model
+     * now but stay expanded in case they come back
+     */
+    public long[] getExpandedGroupIds() {
+        long[] groupIds = new long[mExpandedGroupIds.size()];
+        for(int i = 0; i < groupIds.length; i++) {
+            groupIds[i] = mExpandedGroupIds.keyAt(i);
+        }
+        return groupIds;
+    }
+
+    /**
+     * Expands these groups and collapses the rest at once, i.e. to restore them. Children that
+     * weren't loaded yet are asked to the ChildProvider.
+     * @param groupIds The stable ids of the groups
+     */
+    public void setExpandedGroupIds(long[] groupIds) {
+        mExpandedGroupIds.clear();
+        for(long groupId : groupIds) {
+            mExpandedGroupIds.put(groupId, Boolean.TRUE);
+        }
+        onExpansionChanged();
+        for(long groupId : groupIds) {
+            if(mChildren.indexOfKey(groupId) < 0) {
+                loadChildren(groupId);
+            }
+        }
+    }
+
+    /**
+     * Set the children of a group, replacing the ones it had. If it's expanded, its rows are
+     * updated right away.
+     * @param groupId The stable id of the group
+     * @param children The children or null if it has none
+     */
+    public void setChildren(long groupId, SectionModel children) {
+        mChildren.put(groupId, children);
+        if(mExpandedGroupIds.indexOfKey(groupId) >= 0) {
+            onExpansionChanged();
+        }
+    }
+
+    private void loadChildren(final long groupId) {
+        final ChildProvider provider = mChildProvider;
+        if(provider == null) {
+            return;
+        }
+        if(!mLoadChildrenInBackground) {
+            setChildren(groupId, provider.getChildren(groupId));
+            return;
+        }
+        if(mLoadingGroupIds.indexOfKey(groupId) >= 0) {
+            return;
+        }
+        mLoadingGroupIds.put(groupId, Boolean.TRUE);
+        BackgroundWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SectionModel children = provider.getChildren(groupId);
+                BackgroundWorker.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLoadingGroupIds.remove(groupId);
+                        // Children from a replaced provider aren't valid anymore
+                        if(provider == mChildProvider) {
+                            setChildren(groupId, children);
                         }
                     }
-                    view.setTag(primaryHolder);
-                } else {
-                    primaryHolder = (PrimaryHolder) view.getTag();
-                }
+                });
+            }
+        });
+    }
 
-                if(i == mMainSections.length-1) {
-                    primaryHolder.bottomDivider.setVisibility(View.GONE);
-                } else {
-                    primaryHolder.bottomDivider.setVisibility(View.VISIBLE);
-                }
+    private void onExpansionChanged() {
+        updateExpansionIndex();
+        notifyDataSetChanged();
+    }
 
-                primaryHolder.primaryTextView.setText((CharSequence) getItem(i));
-                if(((CheckableRelativeLayout) view).isChecked()) {
-                    primaryHolder.primaryTextView.setTypeface(null, Typeface.BOLD);
-                } else {
-                    primaryHolder.primaryTextView.setTypeface(null, Typeface.NORMAL);
-                }
-                icon = getPrimaryDrawableId(i);
-                if(icon != -1) {
-                    primaryHolder.primaryImageView.setImageResource(icon);
-                    primaryHolder.primaryImageView.setVisibility(View.VISIBLE);
-                } else {
-                    primaryHolder.primaryImageView.setVisibility(View.GONE);
+    /**
+     * Rebuilds the index of expanded groups. Groups that aren't in the model anymore are skipped
+     * but stay expanded, in case they come back.
+     */
+    private void updateExpansionIndex() {
+        int[] sections = new int[mExpandedGroupIds.size()];
+        int count = 0;
+        for(int i = 0; i < mExpandedGroupIds.size(); i++) {
+            long groupId = mExpandedGroupIds.keyAt(i);
+            int section = mModel.getPosition(groupId);
+            SectionModel children = mChildren.get(groupId);
+            if(section != SectionModel.NO_POSITION && mModel.isGroup(section) && children != null && children.getCount() > 0) {
+                sections[count++] = section;
+            }
+        }
+        Arrays.sort(sections, 0, count);
+
+        mExpandedSections = new int[count];
+        mExpandedListPositions = new int[count];
+        mChildRowsUpTo = new int[count];
+        mExpandedChildren = new SectionModel[count];
+        int childRows = 0;
+        for(int i = 0; i < count; i++) {
+            mExpandedSections[i] = sections[i];
+            mExpandedListPositions[i] = sections[i] + childRows;
+            mExpandedChildren[i] = mChildren.get(mModel.getStableId(sections[i]));
+            childRows += mExpandedChildren[i].getCount();
+            mChildRowsUpTo[i] = childRows;
+        }
+        mChildRowCount = childRows;
+    }
+
+    /**
+     * Set the provider of the children of the groups. Children already loaded are kept.
+     * @param childProvider The provider. May be null.
+     */
+    public void setChildProvider(ChildProvider childProvider) {
+        this.mChildProvider = childProvider;
+    }
+
+    public ChildProvider getChildProvider() {
+        return mChildProvider;
+    }
+
+    /**
+     * Load children from the ChildProvider in a background thread. The group is shown expanded
+     * right away and its children are added when they're loaded.
+     * @param loadInBackground True to call the ChildProvider from a background thread
+     */
+    public void setLoadChildrenInBackground(boolean loadInBackground) {
+        this.mLoadChildrenInBackground = loadInBackground;
+    }
+
+    /**
+     * Take the sections from a SectionPager instead of the section model. The pager loads them
+     * as their rows are bound and the adapter is notified every time a page is loaded.
+     * Paged sections can't be expandable groups. Set it before giving the adapter to the
+     * ListView, which only asks hasStableIds then.
+     * @param pager The pager or null to go back to the section model
+     */
+    public void setSectionPager(SectionPager pager) {
+        if(mPager != null) {
+            mPager.release();
+        }
+        mPager = pager;
+        if(pager != null) {
+            pager.setOnPageLoadedListener(new SectionPager.OnPageLoadedListener() {
+                @Override
+                public void onPageLoaded(int page) {
+                    if(!mBindingPagedRow) {
+                        notifyDataSetChanged();
+                    } else if(!mPageNotificationPosted) {
+                        // Pages loaded without a background thread arrive from getView, in the
+                        // middle of the ListView layout, which can't be notified from there
+                        mPageNotificationPosted = true;
+                        BackgroundWorker.postToMainThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                mPageNotificationPosted = false;
+                                notifyDataSetChanged();
+                            }
+                        });
+                    }
                 }
+            });
+        }
+    }
+
+    public SectionPager getSectionPager() {
+        return mPager;
+    }
+
+    /**
+     * @return Number of child rows shown, i.e. the rows of the children of the expanded groups
+     */
+    public int getChildRowCount() {
+        return mChildRowCount;
+    }
+
+    @Override
+    public View getView(int i, View view, ViewGroup viewGroup) {
+        int type = getItemViewType(i);
+        if(view != null && !isReusableRow(view, type)) {
+            view = null;
+        }
+        if(view == null && mPrefetchedRows != null) {
+            view = takePrefetchedRow(i, type);
+        }
+        if(view == null && mRowPool != null) {
+            view = mRowPool.getRecycledRow(type);
+            if(view != null && !isReusableRow(view, type)) {
+                view = null;
+            }
+        }
+        boolean measure = mMetrics != DrawerMetrics.NONE;
+        if(view == null) {
+            long inflationStart = measure ? System.nanoTime() : 0;
+            view = createRow(type);
+            if(measure) {
+                mMetrics.onRowInflated(type, System.nanoTime() - inflationStart);
+            }
+        }
+        long bindStart = measure ? System.nanoTime() : 0;
+
+        if(mPager != null) {
+            mBindingPagedRow = true;
+            try {
+                mPager.onBind(i);
+            } finally {
+                mBindingPagedRow = false;
+            }
+        }
+        SectionModel model = getRowModel(i);
+        int index = getRowIndex(i);
+        // Position among the main and secondary sections, to place the dividers between them
+        int section = mPager != null ? i : index;
+
+        if(mUseFlatRows) {
+            bindFlatRow(model, index, section, type, (NavigationRowView) view);
+        } else {
+            bindXmlRow(model, index, section, type, view);
+        }
+        // After the label, so the new typeface is measured with it
+        ((Checkable) view).setChecked(i == mCheckedPosition);
+        if(measure) {
+            mMetrics.onRowBound(type, System.nanoTime() - bindStart);
+        }
+        return view;
+    }
+
+    private void bindXmlRow(SectionModel model, int index, int section, int type, View view) {
+        switch (type) {
+            case TYPE_MAIN:
+                PrimaryHolder primaryHolder = (PrimaryHolder) view.getTag();
+                primaryHolder.prepare(mBindGeneration);
+                bindDividerDrawable(primaryHolder, view, type);
+
+                setVisibility(primaryHolder.bottomDivider, section == getMainSectionCount()-1 ? View.GONE : View.VISIBLE);
+                bindText(primaryHolder, primaryHolder.primaryTextView, model, index);
+                bindIcon(primaryHolder, primaryHolder.primaryImageView, model, index, type);
+                bindBadge(primaryHolder, view, getBadge(model, index));
                 break;
             case TYPE_SECONDARY:
-                SecondaryHolder holder;
-                if(view == null) {
-                    view = View.inflate(mContext, R.layout.secondary_navigation_item, null);
-                    holder = new SecondaryHolder();
-                    view.setBackgroundResource(mSecondaryBackResId);
-                    holder.secondaryTextView = (CheckedTextView) view.findViewById(android.R.id.text1);
-                    holder.secondaryImageView = (ImageView) view.findViewById(android.R.id.icon);
-                    holder.topDivider = view.findViewById(R.id.google_nav_drawer_divider_top);
-                    holder.bottomDivider = view.findViewById(R.id.google_nav_drawer_divider_bottom);
-                    if(secondaryDividerHeight != -1) {
-                        ((RelativeLayout.LayoutParams) holder.topDivider.getLayoutParams()).height = secondaryDividerHeight;
-                        ((RelativeLayout.LayoutParams) holder.bottomDivider.getLayoutParams()).height = secondaryDividerHeight;
-                    }
+                SecondaryHolder holder = (SecondaryHolder) view.getTag();
+                holder.prepare(mBindGeneration);
+                bindDividerDrawable(holder, view, type);
 
-                    if(secondaryDividerColor != -1) {
-                        holder.topDivider.setBackgroundColor(secondaryDividerColor);
-                        holder.bottomDivider.setBackgroundColor(secondaryDividerColor);
-                    }
+                setVisibility(holder.topDivider, section != getMainSectionCount() ? View.GONE : View.VISIBLE);
+                bindText(holder, holder.secondaryTextView, model, index);
+                bindIcon(holder, holder.secondaryImageView, model, index, type);
+                bindBadge(holder, view, getBadge(model, index));
+                break;
+            case TYPE_CHILD:
+                ChildHolder childHolder = (ChildHolder) view.getTag();
+                childHolder.prepare(mBindGeneration);
+                bindDividerDrawable(childHolder, view, type);
 
-                    if(secondaryDividerDrawable != null) {
-                        int sdk = android.os.Build.VERSION.SDK_INT;
-                        if(sdk < android.os.Build.VERSION_CODES.JELLY_BEAN) {
-                            holder.topDivider.setBackgroundDrawable(secondaryDividerDrawable);
-                            holder.bottomDivider.setBackgroundDrawable(secondaryDividerDrawable);
-                        } else {
-                            holder.topDivider.setBackground(secondaryDividerDrawable);
-                            holder.bottomDivider.setBackground(secondaryDividerDrawable);
-                        }
-                    }
-                    view.setTag(holder);
-                } else {
-                    holder = (SecondaryHolder) view.getTag();
+                bindText(childHolder, childHolder.secondaryTextView, model, index);
+                bindIcon(childHolder, childHolder.secondaryImageView, model, index, type);
+                bindBadge(childHolder, view, getBadge(model, index));
+                break;
+        }
+    }
+
+    /**
+     * Sets the label of an XML row if it changed since its last bind. The typeface follows the
+     * checked state of the row.
+     */
+    private void bindText(RowHolder holder, CheckedTextView textView, SectionModel model, int i) {
+        String label = model.getLabel(i);
+        if(!holder.labelBound || !TextUtils.equals(label, holder.label)) {
+            textView.setText(label);
+            holder.label = label;
+            holder.labelBound = true;
+        }
+    }
+
+    private int getBadge(SectionModel model, int i) {
+        if(mBadges == null || mBadges.size() == 0) {
+            return SectionBadges.NO_BADGE;
+        }
+        long stableId = model.getStableId(i);
+        return stableId == SectionModel.NO_STABLE_ID ? SectionBadges.NO_BADGE : mBadges.get(stableId);
+    }
+
+    /**
+     * Shows the badge count of a row if it's not the last bound one
+     */
+    private void bindBadge(RowHolder holder, View row, int count) {
+        if(holder.badge == count) {
+            return;
+        }
+        holder.badge = count;
+        String text = SectionBadges.getText(count);
+        if(row instanceof NavigationRowView) {
+            ((NavigationRowView) row).setBadge(text);
+        } else {
+            holder.badgeView.setText(text);
+            setVisibility(holder.badgeView, text == null ? View.GONE : View.VISIBLE);
+        }
+    }
+
+    /**
+     * Binds again only the badge of a row, i.e. when its count changes. Cheaper than getView,
+     * which binds the whole row.
+     * @param row A row returned by getView
+     * @param position The position the row is bound to
+     */
+    public void bindBadge(View row, int position) {
+        if(!(row.getTag() instanceof RowHolder) || position < 0 || position >= getCount()) {
+            return;
+        }
+        bindBadge((RowHolder) row.getTag(), row, getBadge(getRowModel(position), getRowIndex(position)));
+    }
+
+    /**
+     * Set the badge counts shown at the end of the rows, by section stable id. Call
+     * notifyDataSetChanged or bindBadge afterwards.
+     * @param badges The badge counts. May be null.
+     */
+    public void setSectionBadges(SectionBadges badges) {
+        mBadges = badges;
+    }
+
+    public SectionBadges getSectionBadges() {
+        return mBadges;
+    }
+
+    /**
+     * Set where the inflation and bind times of the rows created and bound by getView are reported
+     * @param metrics The metrics. Null or DrawerMetrics.NONE to stop measuring them.
+     */
+    public void setMetrics(DrawerMetrics metrics) {
+        mMetrics = metrics == null ? DrawerMetrics.NONE : metrics;
+    }
+
+    /**
+     * Sets the icon of an XML row if the section has a different one than the last bound
+     */
+    private void bindIcon(RowHolder holder, ImageView imageView, SectionModel model, int i, int type) {
+        int icon = getDrawableId(model, i);
+        IconSource source = model.getIconSource(i);
+        if(holder.icon == icon && holder.iconSource == source) {
+            return;
+        }
+        holder.icon = icon;
+        holder.iconSource = source;
+
+        if(loadIconSource(imageView, model, i, type)) {
+            setVisibility(imageView, View.VISIBLE);
+        } else if(icon != -1) {
+            setIcon(imageView, icon);
+            setVisibility(imageView, View.VISIBLE);
+        } else {
+            setVisibility(imageView, View.GONE);
+        }
+    }
+
+    private static void setVisibility(View view, int visibility) {
+        if(view.getVisibility() != visibility) {
+            view.setVisibility(visibility);
+        }
+    }
+
+    private View takePrefetchedRow(int position, int type) {
+        View row = mPrefetchedRows.get(position);
+        if(row == null) {
+            return null;
+        }
+        mPrefetchedRows.remove(position);
+        if(!isReusableRow(row, type)) {
+            // The sections or the row mode changed since it was prefetched
+            mMetrics.onPrefetchWasted(getRowViewType(row));
+            return null;
+        }
+        mMetrics.onPrefetchHit(type);
+        return row;
+    }
+
+    /**
+     * Creates, or takes from the RecycledRowPool, and binds the row of a position before the
+     * list asks for it, so getView only has to check it's still bound to the same section.
+     * Does nothing if the row of this position was already prefetched.
+     * @param position The position of the row
+     * @param parent The list that will show it
+     */
+    public void prefetchRow(int position, ViewGroup parent) {
+        if(mPrefetchedRows == null) {
+            mPrefetchedRows = new SparseArray<View>();
+        } else if(mPrefetchedRows.get(position) != null) {
+            return;
+        }
+        mPrefetchedRows.put(position, getView(position, null, parent));
+    }
+
+    /**
+     * @return Number of prefetched rows getView hasn't used yet
+     */
+    public int getPrefetchedRowCount() {
+        return mPrefetchedRows == null ? 0 : mPrefetchedRows.size();
+    }
+
+    /**
+     * Moves the prefetched rows getView hasn't used to the RecycledRowPool, reporting them as
+     * wasted. Called once the list has laid out its rows or when the adapter is replaced.
+     */
+    public void releasePrefetchedRows() {
+        if(mPrefetchedRows == null) {
+            return;
+        }
+        for(int i = 0; i < mPrefetchedRows.size(); i++) {
+            View row = mPrefetchedRows.valueAt(i);
+            int type = getRowViewType(row);
+            mMetrics.onPrefetchWasted(type);
+            if(mRowPool != null && type != IGNORE_ITEM_VIEW_TYPE) {
+                mRowPool.putRecycledRow(type, row);
+            }
+        }
+        mPrefetchedRows = null;
+    }
+
+    /**
+     * A row can be reused if it has the right type and was created for the current row mode
+     */
+    private boolean isReusableRow(View row, int type) {
+        return (row instanceof NavigationRowView) == mUseFlatRows && getRowViewType(row) == type;
+    }
+
+    /**
+     * Creates an empty row of the given type with the current background and divider options.
+     * Rows can be created ahead of time and put in the RecycledRowPool, getView will use them
+     * before creating new ones.
+     * @param type TYPE_MAIN, TYPE_SECONDARY or TYPE_CHILD
+     * @return The unbound row
+     */
+    @TargetApi(16)
+    public View createRow(int type) {
+        if(mUseFlatRows) {
+            return createFlatRow(type);
+        }
+
+        View view;
+        switch (type) {
+            case TYPE_MAIN:
+                view = View.inflate(mContext, R.layout.main_navigation_item, null);
+                view.setBackgroundResource(mMainBackResId);
+                PrimaryHolder primaryHolder = new PrimaryHolder();
+                primaryHolder.primaryTextView = (CheckedTextView) view.findViewById(android.R.id.text1);
+                primaryHolder.primaryImageView = (ImageView) view.findViewById(android.R.id.icon);
+                primaryHolder.bottomDivider = view.findViewById(R.id.google_nav_drawer_divider_bottom);
+                primaryHolder.badgeView = (TextView) view.findViewById(R.id.google_nav_drawer_badge);
+                if(mainDividerHeight != -1) {
+                    ((RelativeLayout.LayoutParams) primaryHolder.bottomDivider.getLayoutParams()).height = mainDividerHeight;
                 }
-                if(i != mMainSections.length) {
-                    holder.topDivider.setVisibility(View.GONE);
-                } else {
-                    holder.topDivider.setVisibility(View.VISIBLE);
+
+                if(mainDividerColor != -1) {
+                    primaryHolder.bottomDivider.setBackgroundColor(mainDividerColor);
                 }
-                holder.secondaryTextView.setText((CharSequence) getItem(i));
 
-                if(((CheckableRelativeLayout) view).isChecked()) {
-                    holder.secondaryTextView.setTypeface(null, Typeface.BOLD);
-                } else {
-                    holder.secondaryTextView.setTypeface(null, Typeface.NORMAL);
+                bindDividerDrawable(primaryHolder, view, type);
+                view.setTag(primaryHolder);
+                break;
+            default:
+                view = View.inflate(mContext, R.layout.secondary_navigation_item, null);
+                SecondaryHolder holder = type == TYPE_CHILD ? new ChildHolder() : new SecondaryHolder();
+                view.setBackgroundResource(mSecondaryBackResId);
+                holder.secondaryTextView = (CheckedTextView) view.findViewById(android.R.id.text1);
+                holder.secondaryImageView = (ImageView) view.findViewById(android.R.id.icon);
+                holder.topDivider = view.findViewById(R.id.google_nav_drawer_divider_top);
+                holder.bottomDivider = view.findViewById(R.id.google_nav_drawer_divider_bottom);
+                holder.badgeView = (TextView) view.findViewById(R.id.google_nav_drawer_badge);
+                if(secondaryDividerHeight != -1) {
+                    ((RelativeLayout.LayoutParams) holder.topDivider.getLayoutParams()).height = secondaryDividerHeight;
+                    ((RelativeLayout.LayoutParams) holder.bottomDivider.getLayoutParams()).height = secondaryDividerHeight;
                 }
 
-                icon = getSecondaryDrawableId(i);
-                if(icon != -1) {
-                    holder.secondaryImageView.setImageResource(icon);
-                    holder.secondaryImageView.setVisibility(View.VISIBLE);
-                } else {
-                    holder.secondaryImageView.setVisibility(View.GONE);
+                if(secondaryDividerColor != -1) {
+                    holder.topDivider.setBackgroundColor(secondaryDividerColor);
+                    holder.bottomDivider.setBackgroundColor(secondaryDividerColor);
                 }
 
+                bindDividerDrawable(holder, view, type);
+                if(type == TYPE_CHILD) {
+                    // Children look like secondary sections, indented and without dividers
+                    holder.topDivider.setVisibility(View.GONE);
+                    holder.bottomDivider.setVisibility(View.GONE);
+                    view.setPadding(getChildIndent(), 0, 0, 0);
+                }
+                view.setTag(holder);
                 break;
         }
         return view;
     }
 
-    private int getPrimaryDrawableId(int position) {
-        if(mMainSectionsDrawableIds == null) {
-            return -1;
+    private int getMainSectionCount() {
+        return mPager != null ? mPager.getMainCount() : mModel.getMainCount();
+    }
+
+    private int getChildIndent() {
+        if(mChildIndent == -1) {
+            mChildIndent = mContext.getResources().getDimensionPixelSize(R.dimen.child_section_indent);
         }
+        return mChildIndent;
+    }
 
-        if(mMainSectionsDrawableIds.length <= position) {
-            return -1;
+    /**
+     * Same as createRow, but creating a single NavigationRowView instead of inflating the row layouts.
+     */
+    private NavigationRowView createFlatRow(int type) {
+        NavigationRowView row;
+        if(type == TYPE_MAIN) {
+            row = new NavigationRowView(mContext, false);
+            row.setBackgroundResource(mMainBackResId);
+            if(mainDividerHeight != -1) {
+                row.setDividerHeight(mainDividerHeight);
+            }
+            if(mainDividerColor != -1) {
+                row.setDividerColor(mainDividerColor);
+            }
+        } else {
+            row = new NavigationRowView(mContext, true);
+            row.setBackgroundResource(mSecondaryBackResId);
+            if(secondaryDividerHeight != -1) {
+                row.setDividerHeight(secondaryDividerHeight);
+            }
+            if(secondaryDividerColor != -1) {
+                row.setDividerColor(secondaryDividerColor);
+            }
+        }
+        RowHolder holder;
+        if(type == TYPE_CHILD) {
+            row.setPadding(getChildIndent(), 0, 0, 0);
+            row.setBottomDividerVisible(false);
+            holder = new ChildHolder();
+        } else {
+            holder = new RowHolder();
+        }
+        bindDividerDrawable(holder, row, type);
+        row.setTag(holder);
+        return row;
+    }
+
+    /**
+     * Gives the row the divider drawable of its type if it doesn't have it yet, i.e. when it was
+     * created before a deferred divider was loaded
+     */
+    @TargetApi(16)
+    private void bindDividerDrawable(RowHolder holder, View row, int type) {
+        Drawable divider = type == TYPE_MAIN ? mainDividerDrawable : secondaryDividerDrawable;
+        if(divider == null || holder.dividerDrawable == divider) {
+            return;
+        }
+        holder.dividerDrawable = divider;
+        if(row instanceof NavigationRowView) {
+            ((NavigationRowView) row).setDividerDrawable(divider);
+            return;
         }
+        if(holder instanceof PrimaryHolder) {
+            setDividerBackground(((PrimaryHolder) holder).bottomDivider, divider);
+        } else {
+            SecondaryHolder secondaryHolder = (SecondaryHolder) holder;
+            setDividerBackground(secondaryHolder.topDivider, divider);
+            setDividerBackground(secondaryHolder.bottomDivider, divider);
+        }
+    }
 
-        return mMainSectionsDrawableIds[position];
+    @TargetApi(16)
+    private static void setDividerBackground(View divider, Drawable drawable) {
+        int sdk = android.os.Build.VERSION.SDK_INT;
+        if(sdk < android.os.Build.VERSION_CODES.JELLY_BEAN) {
+            divider.setBackgroundDrawable(drawable);
+        } else {
+            divider.setBackground(drawable);
+        }
     }
 
-    private int getSecondaryDrawableId(int position) {
-        position = position - mMainSections.length;
-        if(mSecondarySectionsDrawableIds == null) {
-            return -1;
+    private void bindFlatRow(SectionModel model, int i, int section, int type, NavigationRowView row) {
+        RowHolder holder = (RowHolder) row.getTag();
+        holder.prepare(mBindGeneration);
+        bindDividerDrawable(holder, row, type);
+
+        if(type == TYPE_MAIN) {
+            row.setBottomDividerVisible(section != getMainSectionCount()-1);
+        } else if(type == TYPE_SECONDARY) {
+            row.setTopDividerVisible(section == getMainSectionCount());
+        }
+
+        String label = model.getLabel(i);
+        LabelLayouts layouts = mLabelLayouts != null && mLabelLayouts.getModel() == model ? mLabelLayouts : null;
+        if(!holder.labelBound || !TextUtils.equals(label, holder.label) || holder.labelLayouts != layouts) {
+            if(layouts != null) {
+                row.setLabel(layouts, i);
+            } else {
+                row.setLabel(label);
+            }
+            holder.label = label;
+            holder.labelLayouts = layouts;
+            holder.labelBound = true;
         }
 
-        if(mSecondarySectionsDrawableIds.length <= position) {
-            return -1;
+        int icon = getDrawableId(model, i);
+        IconSource source = model.getIconSource(i);
+        if(holder.icon != icon || holder.iconSource != source) {
+            holder.icon = icon;
+            holder.iconSource = source;
+            if(!loadIconSource(row, model, i, type)) {
+                row.setIcon(getIconDrawable(icon));
+            }
         }
 
-        return mSecondarySectionsDrawableIds[position];
+        bindBadge(holder, row, getBadge(model, i));
+    }
+
+    /**
+     * Starts loading the icon of the section if it comes from a non-resource IconSource.
+     * Otherwise, cancels any previous request of the target, which may be a recycled row.
+     * @return true if the icon is being loaded by the IconLoader
+     */
+    private boolean loadIconSource(View target, SectionModel model, int position, int type) {
+        if(mIconLoader == null) {
+            return false;
+        }
+        IconSource source = model.getIconSource(position);
+        if(source == null || source.getResourceId() != -1) {
+            mIconLoader.cancel(target);
+            return false;
+        }
+        int size;
+        if(type == TYPE_MAIN) {
+            if(mMainIconSize == -1) {
+                mMainIconSize = mContext.getResources().getDimensionPixelSize(R.dimen.main_section_icon_size);
+            }
+            size = mMainIconSize;
+        } else {
+            if(mSecondaryIconSize == -1) {
+                mSecondaryIconSize = mContext.getResources().getDimensionPixelSize(R.dimen.secondary_section_icon_size);
+            }
+            size = mSecondaryIconSize;
+        }
+        mIconLoader.load(source, target, size, getIconDrawable(mIconPlaceholderResId));
+        return true;
+    }
+
+    private void setIcon(ImageView imageView, int icon) {
+        if(mDrawableCache != null) {
+            imageView.setImageDrawable(mDrawableCache.getDrawable(icon));
+        } else {
+            imageView.setImageResource(icon);
+        }
+    }
+
+    private Drawable getIconDrawable(int icon) {
+        if(icon <= 0) {
+            return null;
+        }
+        if(mDrawableCache != null) {
+            return mDrawableCache.getDrawable(icon);
+        }
+        return mContext.getResources().getDrawable(icon);
+    }
+
+    private int getDrawableId(SectionModel model, int position) {
+        IconSource source = model.getIconSource(position);
+        if(source != null && source.getResourceId() != -1) {
+            return source.getResourceId();
+        }
+        return model.getIcon(position);
     }
 
     public void setSecondaryDividerHeight(int height) {
         this.secondaryDividerHeight = height;
     }
 
-    private class PrimaryHolder {
+    /**
+     * Returns the view type of a row created by this adapter.
+     * @param row A row returned by getView
+     * @return TYPE_MAIN, TYPE_SECONDARY, TYPE_CHILD or IGNORE_ITEM_VIEW_TYPE if it isn't a section row
+     */
+    public static int getRowViewType(View row) {
+        if(row.getTag() instanceof ChildHolder) {
+            return TYPE_CHILD;
+        }
+        if(row instanceof NavigationRowView) {
+            return ((NavigationRowView) row).isSecondary() ? TYPE_SECONDARY : TYPE_MAIN;
+        }
+        Object holder = row.getTag();
+        if(holder instanceof PrimaryHolder) {
+            return TYPE_MAIN;
+        } else if(holder instanceof SecondaryHolder) {
+            return TYPE_SECONDARY;
+        }
+        return IGNORE_ITEM_VIEW_TYPE;
+    }
+
+    private static int nextBindGeneration() {
+        return ++sLastBindGeneration;
+    }
+
+    /**
+     * Remembers what was bound to a row, so binding it again to a section that looks the same
+     * doesn't call any setter. Each setter may request a layout or invalidate the row.
+     */
+    private static class RowHolder {
+        private static final int UNBOUND = Integer.MIN_VALUE;
+
+        public int generation = UNBOUND;
+        public boolean labelBound;
+        public String label;
+        // Only set in flat rows
+        public LabelLayouts labelLayouts;
+        public int icon = UNBOUND;
+        public IconSource iconSource;
+        public int badge = UNBOUND;
+        // Only set in XML rows
+        public TextView badgeView;
+        // Kept across generations, it's what the row views show
+        public Drawable dividerDrawable;
+
+        /**
+         * Forgets the bound values if the adapter options changed since the last bind
+         */
+        public void prepare(int bindGeneration) {
+            if(generation != bindGeneration) {
+                generation = bindGeneration;
+                labelBound = false;
+                label = null;
+                labelLayouts = null;
+                icon = UNBOUND;
+                iconSource = null;
+                badge = UNBOUND;
+            }
+        }
+    }
+
+    private static class PrimaryHolder extends RowHolder {
         public CheckedTextView primaryTextView;
         public ImageView primaryImageView;
         public View bottomDivider;
     }
 
-    private class SecondaryHolder {
+    private static class SecondaryHolder extends RowHolder {
         public CheckedTextView secondaryTextView;
         public ImageView secondaryImageView;
         public View topDivider;
         public View bottomDivider;
     }
 
+    /**
+     * Holder of child rows. Flat child rows only use the RowHolder fields.
+     */
+    private static class ChildHolder extends SecondaryHolder {
+    }
+
+    public RecycledRowPool getRecycledRowPool() {
+        return mRowPool;
+    }
+
+    /**
+     * Set a pool shared with other adapters so rows can be reused before inflating new ones.
+     * Rows in the pool must have been created with the same styling options as this adapter.
+     * @param rowPool The pool. May be null.
+     */
+    public void setRecycledRowPool(RecycledRowPool rowPool) {
+        this.mRowPool = rowPool;
+    }
+
+    public DrawableCache getDrawableCache() {
+        return mDrawableCache;
+    }
+
+    /**
+     * Set a cache for the section icons, so rows share their constant states instead of
+     * resolving the icon resources on every bind.
+     * @param drawableCache The cache. May be null.
+     */
+    public void setDrawableCache(DrawableCache drawableCache) {
+        this.mDrawableCache = drawableCache;
+        mBindGeneration = nextBindGeneration();
+    }
+
+    /**
+     * Set the icons of the main sections from any IconSource. They take precedence over the
+     * drawable ids. Non-resource sources need an IconLoader.
+     * @param mainSectionsIconSources The icon sources. Elements and the array itself may be null.
+     */
+    public void setMainSectionsIconSources(IconSource[] mainSectionsIconSources) {
+        setSectionModel(new SectionModel.Builder(mModel).setMainIconSources(mainSectionsIconSources).build());
+    }
+
+    /**
+     * Same as setMainSectionsIconSources, for the secondary sections.
+     */
+    public void setSecondarySectionsIconSources(IconSource[] secondarySectionsIconSources) {
+        setSectionModel(new SectionModel.Builder(mModel).setSecondaryIconSources(secondarySectionsIconSources).build());
+    }
+
+    public IconLoader getIconLoader() {
+        return mIconLoader;
+    }
+
+    public void setIconLoader(IconLoader iconLoader) {
+        this.mIconLoader = iconLoader;
+        mBindGeneration = nextBindGeneration();
+    }
+
+    public int getIconPlaceholderResId() {
+        return mIconPlaceholderResId;
+    }
+
+    /**
+     * Set the drawable shown while an icon is being loaded, or if it couldn't be loaded.
+     * @param iconPlaceholderResId The drawable resource id or -1 for none
+     */
+    public void setIconPlaceholderResId(int iconPlaceholderResId) {
+        this.mIconPlaceholderResId = iconPlaceholderResId;
+        mBindGeneration = nextBindGeneration();
+    }
+
+    public boolean isUsingFlatRows() {
+        return mUseFlatRows;
+    }
+
+    /**
+     * Use a single custom drawn View per row instead of the row layouts. It looks the same, keeps
+     * the background, divider and checked typeface options and is cheaper to create, measure and
+     * draw.
+     * @param useFlatRows True to use NavigationRowView rows
+     */
+    public void setUseFlatRows(boolean useFlatRows) {
+        this.mUseFlatRows = useFlatRows;
+        buildLabelLayouts();
+    }
+
+    /**
+     * Measure the labels of flat rows in a background thread when the sections are set, so
+     * binding, drawing and checking a row doesn't measure its label in the UI thread. The rows
+     * bound before they're ready measure their label as usual. XML rows always measure it.
+     * @param precompute True to precompute them
+     */
+    public void setPrecomputeLabelLayouts(boolean precompute) {
+        mPrecomputeLabels = precompute;
+        if(precompute) {
+            buildLabelLayouts();
+        } else {
+            mLabelLayouts = null;
+        }
+    }
+
+    public boolean isPrecomputingLabelLayouts() {
+        return mPrecomputeLabels;
+    }
+
+    /**
+     * @return The layouts of the labels of the current sections, or null if they aren't ready
+     */
+    public LabelLayouts getLabelLayouts() {
+        return mLabelLayouts != null && mLabelLayouts.getModel() == mModel ? mLabelLayouts : null;
+    }
+
+    private void buildLabelLayouts() {
+        final SectionModel model = mModel;
+        if(!mPrecomputeLabels || !mUseFlatRows || mPager != null || model == null || model.getCount() == 0
+                || (mLabelLayouts != null && mLabelLayouts.getModel() == model)) {
+            return;
+        }
+        Resources res = mContext.getResources();
+        final float mainTextSize = res.getDimension(R.dimen.main_section_text_size);
+        final float secondaryTextSize = res.getDimension(R.dimen.secondary_section_text_size);
+        BackgroundWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final LabelLayouts layouts = LabelLayouts.build(model, mainTextSize, secondaryTextSize);
+                BackgroundWorker.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Layouts of replaced sections are of no use
+                        if(mModel == model && mPrecomputeLabels) {
+                            mLabelLayouts = layouts;
+                            notifyDataSetChanged();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    public SectionModel getSectionModel() {
+        return mModel;
+    }
+
+    /**
+     * Replace all the sections. Call notifyDataSetChanged afterwards. Groups with the same stable
+     * id keep their children and expanded state.
+     * @param model The new sections. Cannot be null.
+     */
+    public void setSectionModel(SectionModel model) {
+        this.mModel = model;
+        if(mExpandedGroupIds.size() > 0) {
+            updateExpansionIndex();
+        }
+        buildLabelLayouts();
+    }
+
     public String[] getMainSections() {
-        return mMainSections;
+        return mModel.getMainSections();
     }
 
     public void setMainSections(String[] mMainSections) {
-        this.mMainSections = mMainSections;
+        setSectionModel(new SectionModel.Builder(mModel).setMainSections(mMainSections).build());
     }
 
     public String[] getSecondarySections() {
-        return mSecondarySections;
+        return mModel.getSecondarySections();
     }
 
     public void setSecondarySections(String[] mSecondarySections) {
-        this.mSecondarySections = mSecondarySections;
+        setSectionModel(new SectionModel.Builder(mModel).setSecondarySections(mSecondarySections).build());
     }
 
     public int[] getMainSectionsDrawableIds() {
-        return mMainSectionsDrawableIds;
+        return mModel.getMainIcons();
     }
 
     public void setMainSectionsDrawableIds(int[] mMainSectionsDrawableIds) {
-        this.mMainSectionsDrawableIds = mMainSectionsDrawableIds;
+        setSectionModel(new SectionModel.Builder(mModel).setMainIcons(mMainSectionsDrawableIds).build());
     }
 
     public int[] getSecondarySectionsDrawableIds() {
-        return mSecondarySectionsDrawableIds;
+        return mModel.getSecondaryIcons();
     }
 
     public void setSecondarySectionsDrawableIds(int[] mSecondarySectionsDrawableIds) {
-        this.mSecondarySectionsDrawableIds = mSecondarySectionsDrawableIds;
+        setSectionModel(new SectionModel.Builder(mModel).setSecondaryIcons(mSecondarySectionsDrawableIds).build());
     }
 
     public int getMainBackResId() {
@@ -318,6 +1355,9 @@ public class GoogleNavigationDrawerAdapter extends BaseAdapter {
         return secondaryDividerDrawable;
     }
 
+    /**
+     * Rows created with another divider drawable get this one the next time they're bound
+     */
     public void setSecondaryDividerDrawable(Drawable secondaryDividerDrawable) {
         this.secondaryDividerDrawable = secondaryDividerDrawable;
     }
@@ -334,6 +1374,9 @@ public class GoogleNavigationDrawerAdapter extends BaseAdapter {
         return mainDividerDrawable;
     }
 
+    /**
+     * Rows created with another divider drawable get this one the next time they're bound
+     */
     public void setMainDividerDrawable(Drawable mainDividerDrawable) {
         this.mainDividerDrawable = mainDividerDrawable;
     }
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of already inflated section rows, keyed by view type.
+ *
+ * A ListView only recycles rows inside its own RecycleBin, which is lost every time the list
+ * is re-created. This pool outlives both the list and the adapter, so rows can be handed over
+ * to the next list instead of being inflated again.
+ */
+public class RecycledRowPool {
+
+    public static final int DEFAULT_MAX_ROWS_PER_TYPE = 16;
+
+    private SparseArray<ArrayList<View>> mScrap = new SparseArray<ArrayList<View>>();
+    private SparseIntArray mMaxRows = new SparseIntArray();
+
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+
+    /**
+     * Get a recycled row of the given type.
+     * @param viewType The view type as returned by the adapter
+     * @return A detached row or null if there's none available
+     */
+    public View getRecycledRow(int viewType) {
+        ArrayList<View> scrap = mScrap.get(viewType);
+        if(scrap == null || scrap.isEmpty()) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return scrap.remove(scrap.size() - 1);
+    }
+
+    /**
+     * Put a row in the pool. Rows which are still attached to a parent are ignored.
+     * @param viewType The view type of the row
+     * @param row The row to keep
+     * @return true if the row was kept
+     */
+    public boolean putRecycledRow(int viewType, View row) {
+        if(row == null || row.getParent() != null) {
+            return false;
+        }
+        ArrayList<View> scrap = mScrap.get(viewType);
+        if(scrap == null) {
+            scrap = new ArrayList<View>();
+            mScrap.put(viewType, scrap);
+        }
+        if(scrap.size() >= getMaxRecycledRows(viewType)) {
+            return false;
+        }
+        scrap.add(row);
+        return true;
+    }
+
+    public int getRecycledRowCount(int viewType) {
+        ArrayList<View> scrap = mScrap.get(viewType);
+        return scrap == null ? 0 : scrap.size();
+    }
+
+    public int getMaxRecycledRows(int viewType) {
+        return mMaxRows.get(viewType, DEFAULT_MAX_ROWS_PER_TYPE);
+    }
+
+    public void setMaxRecycledRows(int viewType, int max) {
+        mMaxRows.put(viewType, max);
+        ArrayList<View> scrap = mScrap.get(viewType);
+        while(scrap != null && scrap.size() > max) {
+            scrap.remove(scrap.size() - 1);
+        }
+    }
+
+    /**
+     * @return Number of times a row was taken from the pool instead of being created
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return Number of times a row was requested but the pool had none of that type
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    public void clear() {
+        mScrap.clear();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+import java.util.Arrays;
+
+/**
+ * Badge counts of the sections by their stable id, and the ids whose count changed since the
+ * changes were last cleared, so only their rows are bound again.
+ *
+ * Both are kept in sorted primitive arrays: once they have grown, setting a count doesn't
+ * allocate anything, no matter how often it's called.
+ */
+public class SectionBadges {
+
+    public static final int NO_BADGE = 0;
+
+    /**
+     * Bigger counts are shown as "99+"
+     */
+    public static final int MAX_SHOWN_COUNT = 99;
+
+    private static final String[] sTexts = new String[MAX_SHOWN_COUNT + 2];
+
+    private long[] mIds = new long[8];
+    private int[] mCounts = new int[8];
+    private int mSize = 0;
+
+    private long[] mChangedIds = new long[8];
+    private int mChangedSize = 0;
+
+    /**
+     * Set the count of a section
+     * @param stableId The stable id of the section
+     * @param count The count, NO_BADGE or less to remove the badge
+     * @return true if the count changed
+     */
+    public boolean set(long stableId, int count) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, stableId);
+        if(count <= NO_BADGE) {
+            if(index < 0) {
+                return false;
+            }
+            System.arraycopy(mIds, index + 1, mIds, index, mSize - index - 1);
+            System.arraycopy(mCounts, index + 1, mCounts, index, mSize - index - 1);
+            mSize--;
+        } else if(index >= 0) {
+            if(mCounts[index] == count) {
+                return false;
+            }
+            mCounts[index] = count;
+        } else {
+            index = -index - 1;
+            if(mSize == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+                mCounts = Arrays.copyOf(mCounts, mSize * 2);
+            }
+            System.arraycopy(mIds, index, mIds, index + 1, mSize - index);
+            System.arraycopy(mCounts, index, mCounts, index + 1, mSize - index);
+            mIds[index] = stableId;
+            mCounts[index] = count;
+            mSize++;
+        }
+        markChanged(stableId);
+        return true;
+    }
+
+    /**
+     * @return The count of the section or NO_BADGE
+     */
+    public int get(long stableId) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, stableId);
+        return index >= 0 ? mCounts[index] : NO_BADGE;
+    }
+
+    /**
+     * Removes all the badges
+     */
+    public void clear() {
+        for(int i = 0; i < mSize; i++) {
+            markChanged(mIds[i]);
+        }
+        mSize = 0;
+    }
+
+    /**
+     * @return The number of sections with a badge
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param index An index between 0 and size() - 1
+     * @return The stable id of the section with the badge at this index, sorted by id
+     */
+    public long getIdAt(int index) {
+        return mIds[index];
+    }
+
+    /**
+     * @param index An index between 0 and size() - 1
+     * @return The count of the badge at this index
+     */
+    public int getCountAt(int index) {
+        return mCounts[index];
+    }
+
+    private void markChanged(long stableId) {
+        int index = Arrays.binarySearch(mChangedIds, 0, mChangedSize, stableId);
+        if(index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        if(mChangedSize == mChangedIds.length) {
+            mChangedIds = Arrays.copyOf(mChangedIds, mChangedSize * 2);
+        }
+        System.arraycopy(mChangedIds, index, mChangedIds, index + 1, mChangedSize - index);
+        mChangedIds[index] = stableId;
+        mChangedSize++;
+    }
+
+    /**
+     * @return true if the count of the section changed since the last call to clearChanges
+     */
+    public boolean isChanged(long stableId) {
+        return Arrays.binarySearch(mChangedIds, 0, mChangedSize, stableId) >= 0;
+    }
+
+    public boolean hasChanges() {
+        return mChangedSize > 0;
+    }
+
+    public void clearChanges() {
+        mChangedSize = 0;
+    }
+
+    /**
+     * @return The text shown for a count, or null if there's no badge. The texts are created
+     * once and shared, so binding a badge doesn't allocate.
+     */
+    public static String getText(int count) {
+        if(count <= NO_BADGE) {
+            return null;
+        }
+        int index = Math.min(count, MAX_SHOWN_COUNT + 1);
+        String text = sTexts[index];
+        if(text == null) {
+            text = count > MAX_SHOWN_COUNT ? MAX_SHOWN_COUNT + "+" : String.valueOf(count);
+            sTexts[index] = text;
+        }
+        return text;
+    }
+}
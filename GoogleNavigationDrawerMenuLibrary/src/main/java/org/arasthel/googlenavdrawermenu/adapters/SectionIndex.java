@@ -0,0 +1,318 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Search index of the labels of a {@link SectionModel}, built once when the sections are set.
+ *
+ * Labels are normalized to lower case without accents. Queries of 3 or more characters are
+ * looked up in an index of the trigrams of every label and match anywhere in it; shorter ones
+ * are looked up in an index of word initials and only match at the start of a word. Results are
+ * ranked: exact matches first, then label prefixes, word prefixes and other matches, shorter
+ * labels first within each rank.
+ *
+ * An index is immutable and can be searched from any thread.
+ */
+public class SectionIndex {
+
+    /**
+     * Menus with at least this number of sections are indexed and searched in a background thread
+     */
+    public static final int BACKGROUND_SEARCH_THRESHOLD = 2000;
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_PREFIX = 1;
+    private static final int RANK_WORD_PREFIX = 2;
+    private static final int RANK_SUBSTRING = 3;
+    private static final int NO_MATCH = -1;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final SectionModel mModel;
+    private final String[] mNormalizedLabels;
+    // Sorted positions of the labels having each trigram or word initial
+    private final HashMap<Long, int[]> mTrigrams;
+    private final HashMap<Character, int[]> mWordInitials;
+    private final long mBuildTimeNanos;
+
+    /**
+     * Result of a search. Pass it to the next search so, if the user kept typing, only the
+     * sections that matched the previous query are looked at again.
+     */
+    public static class Result {
+        private final String mQuery;
+        private final int[] mMatches;
+        private final long mSearchTimeNanos;
+
+        private Result(String query, int[] matches, long searchTimeNanos) {
+            mQuery = query;
+            mMatches = matches;
+            mSearchTimeNanos = searchTimeNanos;
+        }
+
+        /**
+         * @return The normalized query
+         */
+        public String getQuery() {
+            return mQuery;
+        }
+
+        /**
+         * @return The positions of the matching sections in the model, best ranked first
+         */
+        public int[] getPositions() {
+            return mMatches;
+        }
+
+        public int getCount() {
+            return mMatches.length;
+        }
+
+        public long getSearchTimeNanos() {
+            return mSearchTimeNanos;
+        }
+    }
+
+    public SectionIndex(SectionModel model) {
+        long start = System.nanoTime();
+        mModel = model;
+        int count = model.getCount();
+        mNormalizedLabels = new String[count];
+
+        HashMap<Long, IntList> trigrams = new HashMap<Long, IntList>();
+        HashMap<Character, IntList> initials = new HashMap<Character, IntList>();
+        for(int i = 0; i < count; i++) {
+            String label = normalize(model.getLabel(i));
+            mNormalizedLabels[i] = label;
+            for(int j = 0; j + GRAM_LENGTH <= label.length(); j++) {
+                add(trigrams, getTrigram(label, j), i);
+            }
+            for(int j = 0; j < label.length(); j++) {
+                if(isWordStart(label, j)) {
+                    add(initials, label.charAt(j), i);
+                }
+            }
+        }
+
+        mTrigrams = toArrays(trigrams);
+        mWordInitials = toArrays(initials);
+        mBuildTimeNanos = System.nanoTime() - start;
+    }
+
+    public SectionModel getModel() {
+        return mModel;
+    }
+
+    public long getBuildTimeNanos() {
+        return mBuildTimeNanos;
+    }
+
+    /**
+     * Finds the sections whose label matches the query.
+     * @param query The text typed by the user
+     * @param previous The result of the previous search or null
+     * @return The matching sections. An empty query matches nothing.
+     */
+    public Result search(CharSequence query, Result previous) {
+        long start = System.nanoTime();
+        String normalized = normalize(query == null ? null : query.toString()).trim();
+        if(normalized.length() == 0) {
+            return new Result(normalized, EMPTY, System.nanoTime() - start);
+        }
+
+        int[] candidates;
+        if(previous != null && previous.mQuery.length() >= GRAM_LENGTH && normalized.startsWith(previous.mQuery)) {
+            // Typing more can only remove matches. Sorted again, matches are in rank order.
+            candidates = previous.mMatches.clone();
+            Arrays.sort(candidates);
+        } else if(normalized.length() >= GRAM_LENGTH) {
+            candidates = getTrigramCandidates(normalized);
+        } else {
+            int[] initials = mWordInitials.get(normalized.charAt(0));
+            candidates = initials == null ? EMPTY : initials;
+        }
+
+        // Rank, label length and position packed in a long, so sorting them sorts the matches
+        long[] keys = new long[candidates.length];
+        int matches = 0;
+        for(int position : candidates) {
+            int rank = getRank(mNormalizedLabels[position], normalized);
+            if(rank != NO_MATCH) {
+                long length = Math.min(mNormalizedLabels[position].length(), 0xfffff);
+                keys[matches++] = ((long) rank << 52) | (length << 32) | position;
+            }
+        }
+        Arrays.sort(keys, 0, matches);
+        int[] positions = new int[matches];
+        for(int i = 0; i < matches; i++) {
+            positions[i] = (int) (keys[i] & 0xffffffffL);
+        }
+        return new Result(normalized, positions, System.nanoTime() - start);
+    }
+
+    /**
+     * Intersects the trigram lists of the query, starting by the shortest one
+     */
+    private int[] getTrigramCandidates(String query) {
+        int gramCount = query.length() - GRAM_LENGTH + 1;
+        int[][] lists = new int[gramCount][];
+        for(int i = 0; i < gramCount; i++) {
+            lists[i] = mTrigrams.get(getTrigram(query, i));
+            if(lists[i] == null) {
+                return EMPTY;
+            }
+        }
+        int shortest = 0;
+        for(int i = 1; i < gramCount; i++) {
+            if(lists[i].length < lists[shortest].length) {
+                shortest = i;
+            }
+        }
+        int[] candidates = lists[shortest];
+        for(int i = 0; i < gramCount && candidates.length > 0; i++) {
+            if(i != shortest) {
+                candidates = intersect(candidates, lists[i]);
+            }
+        }
+        return candidates;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while(i < a.length && j < b.length) {
+            if(a[i] < b[j]) {
+                i++;
+            } else if(a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static int getRank(String label, String query) {
+        if(label.equals(query)) {
+            return RANK_EXACT;
+        }
+        if(label.startsWith(query)) {
+            return RANK_PREFIX;
+        }
+        int index = label.indexOf(query, 1);
+        if(index == -1) {
+            return NO_MATCH;
+        }
+        boolean substring = false;
+        while(index != -1) {
+            if(isWordStart(label, index)) {
+                return RANK_WORD_PREFIX;
+            }
+            substring = true;
+            index = label.indexOf(query, index + 1);
+        }
+        // Short queries only match words, anything else would match almost every section
+        return substring && query.length() >= GRAM_LENGTH ? RANK_SUBSTRING : NO_MATCH;
+    }
+
+    private static boolean isWordStart(String label, int index) {
+        return Character.isLetterOrDigit(label.charAt(index)) && (index == 0 || !Character.isLetterOrDigit(label.charAt(index - 1)));
+    }
+
+    private static long getTrigram(String label, int index) {
+        return ((long) label.charAt(index) << 32) | ((long) label.charAt(index + 1) << 16) | label.charAt(index + 2);
+    }
+
+    /**
+     * Lower case without accents, so "Música" matches "musica"
+     */
+    @TargetApi(9)
+    public static String normalize(String text) {
+        if(text == null) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ENGLISH);
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.GINGERBREAD) {
+            return lower;
+        }
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        if(decomposed.length() == lower.length()) {
+            // Nothing was decomposed, so there are no accents to remove
+            return lower;
+        }
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for(int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if(Character.getType(c) != Character.NON_SPACING_MARK) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static <K> void add(HashMap<K, IntList> lists, K key, int position) {
+        IntList list = lists.get(key);
+        if(list == null) {
+            list = new IntList();
+            lists.put(key, list);
+        }
+        list.add(position);
+    }
+
+    private static <K> HashMap<K, int[]> toArrays(HashMap<K, IntList> lists) {
+        HashMap<K, int[]> arrays = new HashMap<K, int[]>(lists.size() * 2);
+        for(java.util.Map.Entry<K, IntList> entry : lists.entrySet()) {
+            arrays.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return arrays;
+    }
+
+    /**
+     * Growable sorted list of positions. A position is only added once even if the label has
+     * the same trigram or initial twice.
+     */
+    private static class IntList {
+        private int[] mValues = new int[4];
+        private int mSize = 0;
+
+        public void add(int value) {
+            if(mSize > 0 && mValues[mSize - 1] == value) {
+                return;
+            }
+            if(mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+}
@@ -0,0 +1,623 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+import org.arasthel.googlenavdrawermenu.utils.IconSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Immutable list of sections of a {@link GoogleNavigationDrawerAdapter}.
+ *
+ * Main sections always come before secondary ones. Every field is stored in its own array
+ * indexed by the absolute position, so reading a section never allocates or does offset
+ * arithmetic. Use a {@link Builder} to create or modify one.
+ */
+public final class SectionModel {
+
+    public static final int NO_ID = -1;
+    public static final int NO_ICON = -1;
+    public static final int NO_POSITION = -1;
+
+    /**
+     * Same as AdapterView.INVALID_ROW_ID. Sections added with it get a stable id derived from
+     * their own id or, if they don't have one, from their type and label.
+     */
+    public static final long NO_STABLE_ID = -1;
+
+    private static final int FLAG_ENABLED = 1;
+    private static final int FLAG_CHECKABLE = 1 << 1;
+    private static final int FLAG_EXPLICIT_STABLE_ID = 1 << 2;
+    private static final int FLAG_GROUP = 1 << 3;
+
+    public static final SectionModel EMPTY = new Builder().build();
+
+    private final int mMainCount;
+    private final int[] mIds;
+    private final String[] mLabels;
+    private final int[] mIcons;
+    private final IconSource[] mIconSources;
+    private final int[] mFlags;
+    private final long[] mStableIds;
+
+    // Stable ids sorted, with the position of each one, to find sections by id
+    private final long[] mSortedStableIds;
+    private final int[] mSortedPositions;
+
+    private SectionModel(int mainCount, int[] ids, String[] labels, int[] icons, IconSource[] iconSources, int[] flags, long[] stableIds) {
+        this(mainCount, ids, labels, icons, iconSources, flags, stableIds, sortByStableId(stableIds));
+    }
+
+    /**
+     * @param sortedPositions The positions sorted by stable id and, for the same id, by position
+     */
+    private SectionModel(int mainCount, int[] ids, String[] labels, int[] icons, IconSource[] iconSources, int[] flags, long[] stableIds,
+                         int[] sortedPositions) {
+        mMainCount = mainCount;
+        mIds = ids;
+        mLabels = labels;
+        mIcons = icons;
+        mIconSources = iconSources;
+        mFlags = flags;
+        mStableIds = stableIds;
+
+        mSortedPositions = sortedPositions;
+        mSortedStableIds = new long[sortedPositions.length];
+        for(int i = 0; i < sortedPositions.length; i++) {
+            mSortedStableIds[i] = stableIds[sortedPositions[i]];
+        }
+    }
+
+    /**
+     * @return The positions sorted by their stable id and, for the same id, by position
+     */
+    private static int[] sortByStableId(long[] stableIds) {
+        int[] order = new int[stableIds.length];
+        boolean sorted = true;
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+            if(i > 0 && stableIds[i - 1] > stableIds[i]) {
+                sorted = false;
+            }
+        }
+        if(!sorted) {
+            mergeSort(order, new int[order.length], 0, order.length, stableIds);
+        }
+        return order;
+    }
+
+    /**
+     * Sorts positions by their key without boxing them. Merge sort is stable, so positions with
+     * the same key keep their order.
+     */
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, long[] keys) {
+        if(to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle, keys);
+        mergeSort(order, buffer, middle, to, keys);
+        if(keys[order[middle - 1]] <= keys[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for(int i = from; i < to; i++) {
+            if(right >= to || (left < middle && keys[buffer[left]] <= keys[buffer[right]])) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Sorts the sections taken from this model by stable id following its own sorted order,
+     * which is linear, instead of sorting them again.
+     * @param newPositions The position of every section of this model in the new one or NO_POSITION
+     * @param stableIds The stable ids of the new model
+     * @return The sorted positions or null if some section of this model was taken twice
+     */
+    private int[] getSortedPositions(int[] newPositions, long[] stableIds) {
+        int[] sorted = new int[stableIds.length];
+        int count = 0;
+        for(int position : mSortedPositions) {
+            int newPosition = newPositions[position];
+            if(newPosition != NO_POSITION) {
+                sorted[count++] = newPosition;
+            }
+        }
+        if(count < sorted.length) {
+            return null;
+        }
+        // Sections with the same id may be in another order than in this model
+        for(int i = 1; i < count; i++) {
+            int position = sorted[i];
+            long id = stableIds[position];
+            int j = i - 1;
+            while(j >= 0 && stableIds[sorted[j]] == id && sorted[j] > position) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = position;
+        }
+        return sorted;
+    }
+
+    /**
+     * Creates a model from the arrays used by setListViewSections.
+     * @param mainSections The main section titles. May be null.
+     * @param secondarySections The secondary section titles. May be null.
+     * @param mainIcons The main sections icons. May be null or shorter than mainSections.
+     * @param secondaryIcons The secondary sections icons. May be null or shorter than secondarySections.
+     */
+    public static SectionModel fromArrays(String[] mainSections, String[] secondarySections, int[] mainIcons, int[] secondaryIcons) {
+        return new Builder()
+                .setMainSections(mainSections)
+                .setSecondarySections(secondarySections)
+                .setMainIcons(mainIcons)
+                .setSecondaryIcons(secondaryIcons)
+                .build();
+    }
+
+    public int getCount() {
+        return mLabels.length;
+    }
+
+    public int getMainCount() {
+        return mMainCount;
+    }
+
+    public int getSecondaryCount() {
+        return mLabels.length - mMainCount;
+    }
+
+    /**
+     * @return GoogleNavigationDrawerAdapter.TYPE_MAIN or TYPE_SECONDARY
+     */
+    public int getType(int position) {
+        return position < mMainCount ? GoogleNavigationDrawerAdapter.TYPE_MAIN : GoogleNavigationDrawerAdapter.TYPE_SECONDARY;
+    }
+
+    /**
+     * @return The id given to the section when it was added or NO_ID
+     */
+    public int getId(int position) {
+        return mIds[position];
+    }
+
+    public String getLabel(int position) {
+        return mLabels[position];
+    }
+
+    /**
+     * @return The drawable id of the icon or NO_ICON
+     */
+    public int getIcon(int position) {
+        return mIcons[position];
+    }
+
+    /**
+     * @return The IconSource of the section or null if the icon is a drawable id
+     */
+    public IconSource getIconSource(int position) {
+        return mIconSources == null ? null : mIconSources[position];
+    }
+
+    public boolean isEnabled(int position) {
+        return (mFlags[position] & FLAG_ENABLED) != 0;
+    }
+
+    public boolean isCheckable(int position) {
+        return (mFlags[position] & FLAG_CHECKABLE) != 0;
+    }
+
+    /**
+     * @return true if the section is an expandable group, whose children are given by a
+     * ChildProvider or GoogleNavigationDrawerAdapter.setChildren
+     */
+    public boolean isGroup(int position) {
+        return (mFlags[position] & FLAG_GROUP) != 0;
+    }
+
+    /**
+     * @return The id that identifies the section across models: the one given when it was added,
+     * its own id or, if it has none, one derived from its type and label
+     */
+    public long getStableId(int position) {
+        return mStableIds[position];
+    }
+
+    /**
+     * @return true if the stable id was derived from the type and label, so renaming the section
+     * gives it a new one
+     */
+    boolean isStableIdDerived(int position) {
+        return (mFlags[position] & FLAG_EXPLICIT_STABLE_ID) == 0 && mIds[position] == NO_ID;
+    }
+
+    /**
+     * Finds a section by its stable id in O(log n), without allocating.
+     * @return The position of the section or NO_POSITION if there isn't any with this id
+     */
+    public int getPosition(long stableId) {
+        int low = 0;
+        int high = mSortedStableIds.length - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = mSortedStableIds[middle];
+            if(id < stableId) {
+                low = middle + 1;
+            } else if(id > stableId) {
+                high = middle - 1;
+            } else {
+                // Duplicated ids resolve to the first section having it
+                while(middle > 0 && mSortedStableIds[middle - 1] == stableId) {
+                    middle--;
+                }
+                return mSortedPositions[middle];
+            }
+        }
+        return NO_POSITION;
+    }
+
+    /**
+     * @return true if any section is disabled
+     */
+    public boolean hasDisabledSections() {
+        for(int flags : mFlags) {
+            if((flags & FLAG_ENABLED) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String[] getMainSections() {
+        return copyLabels(0, mMainCount);
+    }
+
+    public String[] getSecondarySections() {
+        return copyLabels(mMainCount, mLabels.length);
+    }
+
+    public int[] getMainIcons() {
+        return copyIcons(0, mMainCount);
+    }
+
+    public int[] getSecondaryIcons() {
+        return copyIcons(mMainCount, mLabels.length);
+    }
+
+    /**
+     * Creates a model with some of the sections of this one, keeping all their fields.
+     * @param start The position of the first section
+     * @param count The number of sections
+     */
+    public SectionModel getRange(int start, int count) {
+        int[] ids = new int[count];
+        String[] labels = new String[count];
+        int[] icons = new int[count];
+        IconSource[] iconSources = null;
+        int[] flags = new int[count];
+        long[] stableIds = new long[count];
+        System.arraycopy(mIds, start, ids, 0, count);
+        System.arraycopy(mLabels, start, labels, 0, count);
+        System.arraycopy(mIcons, start, icons, 0, count);
+        if(mIconSources != null) {
+            iconSources = new IconSource[count];
+            System.arraycopy(mIconSources, start, iconSources, 0, count);
+        }
+        System.arraycopy(mFlags, start, flags, 0, count);
+        System.arraycopy(mStableIds, start, stableIds, 0, count);
+        int mainCount = Math.max(0, Math.min(count, mMainCount - start));
+        // The sections keep their order, so they're sorted by id like in this model
+        int[] sortedPositions = new int[count];
+        int sorted = 0;
+        for(int position : mSortedPositions) {
+            if(position >= start && position < start + count) {
+                sortedPositions[sorted++] = position - start;
+            }
+        }
+        return new SectionModel(mainCount, ids, labels, icons, iconSources, flags, stableIds, sortedPositions);
+    }
+
+    /**
+     * Creates a model with some of the sections of this one, keeping all their fields. Main
+     * sections still come first, each type in the order of the given positions.
+     * @param positions The positions of the sections, i.e. the result of a search
+     */
+    public SectionModel select(int[] positions) {
+        int count = positions.length;
+        int[] ids = new int[count];
+        String[] labels = new String[count];
+        int[] icons = new int[count];
+        IconSource[] iconSources = mIconSources != null ? new IconSource[count] : null;
+        int[] flags = new int[count];
+        long[] stableIds = new long[count];
+        int mainCount = 0;
+        for(int position : positions) {
+            if(position < mMainCount) {
+                mainCount++;
+            }
+        }
+        int main = 0;
+        int secondary = mainCount;
+        int[] newPositions = new int[mLabels.length];
+        Arrays.fill(newPositions, NO_POSITION);
+        for(int position : positions) {
+            int i = position < mMainCount ? main++ : secondary++;
+            newPositions[position] = i;
+            ids[i] = mIds[position];
+            labels[i] = mLabels[position];
+            icons[i] = mIcons[position];
+            if(iconSources != null) {
+                iconSources[i] = mIconSources[position];
+            }
+            flags[i] = mFlags[position];
+            stableIds[i] = mStableIds[position];
+        }
+        int[] sortedPositions = getSortedPositions(newPositions, stableIds);
+        if(sortedPositions == null) {
+            sortedPositions = sortByStableId(stableIds);
+        }
+        return new SectionModel(mainCount, ids, labels, icons, iconSources, flags, stableIds, sortedPositions);
+    }
+
+    private String[] copyLabels(int from, int to) {
+        String[] labels = new String[to - from];
+        System.arraycopy(mLabels, from, labels, 0, labels.length);
+        return labels;
+    }
+
+    private int[] copyIcons(int from, int to) {
+        int[] icons = new int[to - from];
+        System.arraycopy(mIcons, from, icons, 0, icons.length);
+        return icons;
+    }
+
+    /**
+     * Creates SectionModels. Sections can be added one by one or replaced as a whole with the
+     * same arrays as setListViewSections.
+     */
+    public static class Builder {
+
+        private ArrayList<Section> mMain = new ArrayList<Section>();
+        private ArrayList<Section> mSecondary = new ArrayList<Section>();
+
+        public Builder() {
+        }
+
+        /**
+         * Creates a builder with the sections of an existing model.
+         */
+        public Builder(SectionModel model) {
+            for(int i = 0; i < model.getCount(); i++) {
+                Section section = new Section();
+                section.id = model.getId(i);
+                section.label = model.getLabel(i);
+                section.icon = model.getIcon(i);
+                section.iconSource = model.getIconSource(i);
+                section.enabled = model.isEnabled(i);
+                section.checkable = model.isCheckable(i);
+                section.group = model.isGroup(i);
+                if((model.mFlags[i] & FLAG_EXPLICIT_STABLE_ID) != 0) {
+                    section.stableId = model.getStableId(i);
+                }
+                (i < model.getMainCount() ? mMain : mSecondary).add(section);
+            }
+        }
+
+        public Builder addMainSection(String label, int icon) {
+            return addSection(GoogleNavigationDrawerAdapter.TYPE_MAIN, NO_ID, label, icon, true, true);
+        }
+
+        public Builder addSecondarySection(String label, int icon) {
+            return addSection(GoogleNavigationDrawerAdapter.TYPE_SECONDARY, NO_ID, label, icon, true, true);
+        }
+
+        /**
+         * Adds a section after the others of the same type.
+         * @param type GoogleNavigationDrawerAdapter.TYPE_MAIN or TYPE_SECONDARY
+         * @param id Your own id for the section or NO_ID
+         * @param label The section title
+         * @param icon The drawable id of the icon or NO_ICON
+         * @param enabled Whether the section can be clicked
+         * @param checkable Whether the section stays checked after being clicked
+         */
+        public Builder addSection(int type, int id, String label, int icon, boolean enabled, boolean checkable) {
+            return addSection(type, id, label, icon, enabled, checkable, NO_STABLE_ID);
+        }
+
+        /**
+         * Same as addSection, also giving the stable id of the section, i.e. the id of the item
+         * in your server. Sections with the same stable id are considered the same section when
+         * the menu is updated, so they keep being checked even if they were moved or renamed.
+         * @param stableId The stable id or NO_STABLE_ID to derive it
+         */
+        public Builder addSection(int type, int id, String label, int icon, boolean enabled, boolean checkable, long stableId) {
+            Section section = new Section();
+            section.stableId = stableId;
+            section.id = id;
+            section.label = label;
+            section.icon = icon;
+            section.enabled = enabled;
+            section.checkable = checkable;
+            (type == GoogleNavigationDrawerAdapter.TYPE_MAIN ? mMain : mSecondary).add(section);
+            return this;
+        }
+
+        /**
+         * Adds an expandable group after the other sections of the same type. Groups aren't
+         * checkable, clicking them expands or collapses their children.
+         * @param type GoogleNavigationDrawerAdapter.TYPE_MAIN or TYPE_SECONDARY
+         * @param id Your own id for the group or NO_ID
+         * @param label The group title
+         * @param icon The drawable id of the icon or NO_ICON
+         * @param stableId The stable id used to ask for its children or NO_STABLE_ID to derive it
+         */
+        public Builder addGroup(int type, int id, String label, int icon, long stableId) {
+            addSection(type, id, label, icon, true, false, stableId);
+            ArrayList<Section> sections = type == GoogleNavigationDrawerAdapter.TYPE_MAIN ? mMain : mSecondary;
+            sections.get(sections.size() - 1).group = true;
+            return this;
+        }
+
+        /**
+         * Replaces the main sections, keeping the other fields of the ones that are still there.
+         * @param labels The main section titles. May be null.
+         */
+        public Builder setMainSections(String[] labels) {
+            setLabels(mMain, labels);
+            return this;
+        }
+
+        public Builder setSecondarySections(String[] labels) {
+            setLabels(mSecondary, labels);
+            return this;
+        }
+
+        /**
+         * Sets the icons of the main sections. Sections without an icon in the array get NO_ICON.
+         * @param icons The drawable ids. May be null.
+         */
+        public Builder setMainIcons(int[] icons) {
+            setIcons(mMain, icons);
+            return this;
+        }
+
+        public Builder setSecondaryIcons(int[] icons) {
+            setIcons(mSecondary, icons);
+            return this;
+        }
+
+        /**
+         * Sets the IconSources of the main sections. They take precedence over the icon ids.
+         * @param iconSources The icon sources. May be null.
+         */
+        public Builder setMainIconSources(IconSource[] iconSources) {
+            setIconSources(mMain, iconSources);
+            return this;
+        }
+
+        public Builder setSecondaryIconSources(IconSource[] iconSources) {
+            setIconSources(mSecondary, iconSources);
+            return this;
+        }
+
+        private static void setLabels(ArrayList<Section> sections, String[] labels) {
+            int count = labels == null ? 0 : labels.length;
+            while(sections.size() > count) {
+                sections.remove(sections.size() - 1);
+            }
+            for(int i = 0; i < count; i++) {
+                if(i == sections.size()) {
+                    sections.add(new Section());
+                }
+                sections.get(i).label = labels[i];
+            }
+        }
+
+        private static void setIcons(ArrayList<Section> sections, int[] icons) {
+            for(int i = 0; i < sections.size(); i++) {
+                sections.get(i).icon = icons != null && i < icons.length ? icons[i] : NO_ICON;
+            }
+        }
+
+        private static void setIconSources(ArrayList<Section> sections, IconSource[] iconSources) {
+            for(int i = 0; i < sections.size(); i++) {
+                sections.get(i).iconSource = iconSources != null && i < iconSources.length ? iconSources[i] : null;
+            }
+        }
+
+        public SectionModel build() {
+            int mainCount = mMain.size();
+            int count = mainCount + mSecondary.size();
+
+            int[] ids = new int[count];
+            String[] labels = new String[count];
+            int[] icons = new int[count];
+            IconSource[] iconSources = null;
+            int[] flags = new int[count];
+            long[] stableIds = new long[count];
+            HashMap<String, Integer> occurrences = null;
+
+            for(int i = 0; i < count; i++) {
+                Section section = i < mainCount ? mMain.get(i) : mSecondary.get(i - mainCount);
+                ids[i] = section.id;
+                labels[i] = section.label;
+                icons[i] = section.icon;
+                if(section.iconSource != null) {
+                    if(iconSources == null) {
+                        iconSources = new IconSource[count];
+                    }
+                    iconSources[i] = section.iconSource;
+                }
+                flags[i] = (section.enabled ? FLAG_ENABLED : 0) | (section.checkable ? FLAG_CHECKABLE : 0)
+                        | (section.group ? FLAG_GROUP : 0);
+                if(section.stableId != NO_STABLE_ID) {
+                    flags[i] |= FLAG_EXPLICIT_STABLE_ID;
+                    stableIds[i] = section.stableId;
+                } else if(section.id != NO_ID) {
+                    stableIds[i] = section.id;
+                } else {
+                    // Sections with the same type and label are told apart by their order
+                    String key = (i < mainCount ? "m" : "s") + section.label;
+                    if(occurrences == null) {
+                        occurrences = new HashMap<String, Integer>(count * 2);
+                    }
+                    Integer occurrence = occurrences.get(key);
+                    occurrence = occurrence == null ? 0 : occurrence + 1;
+                    occurrences.put(key, occurrence);
+                    stableIds[i] = hashStableId(key, occurrence);
+                }
+            }
+
+            return new SectionModel(mainCount, ids, labels, icons, iconSources, flags, stableIds);
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key and occurrence. Kept out of the int range, so it can't clash
+     * with section ids, and never NO_STABLE_ID.
+     */
+    private static long hashStableId(String key, int occurrence) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= occurrence;
+        hash *= 0x100000001b3L;
+        if(hash >= Integer.MIN_VALUE && hash <= Integer.MAX_VALUE) {
+            hash ^= 1L << 62;
+        }
+        return hash;
+    }
+
+    private static class Section {
+        public int id = NO_ID;
+        public String label;
+        public int icon = NO_ICON;
+        public IconSource iconSource;
+        public boolean enabled = true;
+        public boolean checkable = true;
+        public boolean group = false;
+        public long stableId = NO_STABLE_ID;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import org.arasthel.googlenavdrawermenu.utils.BackgroundWorker;
+
+/**
+ * Keeps the pages of a {@link SectionSource} around the visible rows.
+ *
+ * Pages are loaded when one of their rows is bound, together with the pages around it, and the
+ * ones farthest from the last bound row are evicted when there are more than the maximum.
+ * Rows of pages that aren't loaded yet are shown as disabled placeholders with the same height.
+ */
+public class SectionPager {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_PREFETCH_PAGES = 1;
+    public static final int DEFAULT_MAX_PAGES = 8;
+
+    public interface OnPageLoadedListener {
+
+        /**
+         * Called on the UI thread when a page has been loaded
+         * @param page The index of the page
+         */
+        public void onPageLoaded(int page);
+    }
+
+    private final SectionSource mSource;
+    private final boolean mLoadInBackground;
+
+    private int mPageSize = DEFAULT_PAGE_SIZE;
+    private int mPrefetchPages = DEFAULT_PREFETCH_PAGES;
+    private int mMaxPages = DEFAULT_MAX_PAGES;
+
+    private SparseArray<SectionModel> mPages = new SparseArray<SectionModel>();
+    private SparseBooleanArray mLoadingPages = new SparseBooleanArray();
+    private SectionModel mPlaceholders;
+    private int mLastBoundPage = 0;
+    private boolean mReleased = false;
+
+    private int mLoadedPageCount = 0;
+    private int mEvictedPageCount = 0;
+
+    private OnPageLoadedListener mListener;
+
+    /**
+     * @param source The source of the sections
+     * @param loadInBackground True to load the pages from a background thread
+     */
+    public SectionPager(SectionSource source, boolean loadInBackground) {
+        mSource = source;
+        mLoadInBackground = loadInBackground;
+    }
+
+    public SectionSource getSource() {
+        return mSource;
+    }
+
+    public void setOnPageLoadedListener(OnPageLoadedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Set the number of sections of each page. Pages already loaded are dropped.
+     * @param pageSize The number of sections, at least 1
+     */
+    public void setPageSize(int pageSize) {
+        if(mPageSize != pageSize) {
+            mPageSize = Math.max(1, pageSize);
+            mPages.clear();
+            mLoadingPages.clear();
+            mPlaceholders = null;
+        }
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * @param prefetchPages Number of pages loaded before and after the page of a bound row
+     */
+    public void setPrefetchPages(int prefetchPages) {
+        mPrefetchPages = prefetchPages;
+    }
+
+    /**
+     * @param maxPages Number of pages kept in memory. It's at least the pages needed around
+     *                 a bound row, with their prefetched pages.
+     */
+    public void setMaxPages(int maxPages) {
+        mMaxPages = maxPages;
+    }
+
+    public int getCount() {
+        return mSource.getCount();
+    }
+
+    public int getMainCount() {
+        return mSource.getMainCount();
+    }
+
+    /**
+     * @return GoogleNavigationDrawerAdapter.TYPE_MAIN or TYPE_SECONDARY
+     */
+    public int getType(int position) {
+        return position < mSource.getMainCount() ? GoogleNavigationDrawerAdapter.TYPE_MAIN : GoogleNavigationDrawerAdapter.TYPE_SECONDARY;
+    }
+
+    /**
+     * @return true if the page of the section at this position is loaded
+     */
+    public boolean isLoaded(int position) {
+        SectionModel page = mPages.get(position / mPageSize);
+        return page != null && position % mPageSize < page.getCount();
+    }
+
+    /**
+     * Doesn't load anything, see onBind.
+     * @return The page of the section at this position or, if it isn't loaded, a model of
+     * placeholders. Use getIndex to read the section from it.
+     */
+    public SectionModel getModel(int position) {
+        SectionModel page = mPages.get(position / mPageSize);
+        if(page != null && position % mPageSize < page.getCount()) {
+            return page;
+        }
+        if(mPlaceholders == null) {
+            SectionModel.Builder builder = new SectionModel.Builder();
+            for(int i = 0; i < mPageSize; i++) {
+                builder.addSection(GoogleNavigationDrawerAdapter.TYPE_MAIN, SectionModel.NO_ID, "", SectionModel.NO_ICON, false, false);
+            }
+            mPlaceholders = builder.build();
+        }
+        return mPlaceholders;
+    }
+
+    /**
+     * @return The index of the section at this position in the model returned by getModel
+     */
+    public int getIndex(int position) {
+        return position % mPageSize;
+    }
+
+    /**
+     * Finds a section by its stable id in the loaded pages
+     * @return The position of the section or SectionModel.NO_POSITION
+     */
+    public int getPosition(long stableId) {
+        for(int i = 0; i < mPages.size(); i++) {
+            int index = mPages.valueAt(i).getPosition(stableId);
+            if(index != SectionModel.NO_POSITION) {
+                return mPages.keyAt(i) * mPageSize + index;
+            }
+        }
+        return SectionModel.NO_POSITION;
+    }
+
+    /**
+     * Called when the row at this position is bound. Loads its page and the ones around it if
+     * they aren't loaded or loading yet.
+     * @param position The position of the section
+     */
+    public void onBind(int position) {
+        int page = position / mPageSize;
+        mLastBoundPage = page;
+        int lastPage = (getCount() - 1) / mPageSize;
+        // The page of the row first, then the ones after it and before it
+        loadPage(page);
+        for(int i = 1; i <= mPrefetchPages; i++) {
+            if(page + i <= lastPage) {
+                loadPage(page + i);
+            }
+            if(page - i >= 0) {
+                loadPage(page - i);
+            }
+        }
+    }
+
+    private void loadPage(final int page) {
+        if(mPages.get(page) != null || mLoadingPages.get(page)) {
+            return;
+        }
+        final int start = page * mPageSize;
+        final int count = Math.min(mPageSize, getCount() - start);
+        if(count <= 0) {
+            return;
+        }
+        if(!mLoadInBackground) {
+            onPageLoaded(page, mSource.getSections(start, count));
+            return;
+        }
+        mLoadingPages.put(page, true);
+        BackgroundWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SectionModel sections = mSource.getSections(start, count);
+                BackgroundWorker.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Pages loading when the size changed have a different range
+                        if(mLoadingPages.get(page)) {
+                            mLoadingPages.delete(page);
+                            onPageLoaded(page, sections);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int page, SectionModel sections) {
+        if(mReleased || sections == null) {
+            return;
+        }
+        mPages.put(page, sections);
+        mLoadedPageCount++;
+        evictPages();
+        if(mListener != null) {
+            mListener.onPageLoaded(page);
+        }
+    }
+
+    /**
+     * Drops the pages farthest from the last bound row, but never the ones around it
+     */
+    private void evictPages() {
+        int maxPages = Math.max(mMaxPages, 2 * mPrefetchPages + 1);
+        while(mPages.size() > maxPages) {
+            int farthest = 0;
+            for(int i = 1; i < mPages.size(); i++) {
+                if(Math.abs(mPages.keyAt(i) - mLastBoundPage) > Math.abs(mPages.keyAt(farthest) - mLastBoundPage)) {
+                    farthest = i;
+                }
+            }
+            mPages.removeAt(farthest);
+            mEvictedPageCount++;
+        }
+    }
+
+    /**
+     * Stops delivering pages, i.e. when the pager is replaced by another one
+     */
+    public void release() {
+        mReleased = true;
+        mListener = null;
+        mPages.clear();
+    }
+
+    /**
+     * @return Number of pages loaded so far, including the ones loaded again after being evicted
+     */
+    public int getLoadedPageCount() {
+        return mLoadedPageCount;
+    }
+
+    public int getEvictedPageCount() {
+        return mEvictedPageCount;
+    }
+
+    /**
+     * @return Number of pages in memory
+     */
+    public int getPageCount() {
+        return mPages.size();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+/**
+ * Gives the sections of a menu too big to be held in memory at once. The adapter asks for them
+ * in pages of consecutive sections, only around the visible rows, through a {@link SectionPager}.
+ *
+ * Main sections come first, like in a {@link SectionModel}.
+ */
+public interface SectionSource {
+
+    /**
+     * @return The number of sections, main and secondary. Called from the UI thread.
+     */
+    public int getCount();
+
+    /**
+     * @return The number of main sections. Called from the UI thread.
+     */
+    public int getMainCount();
+
+    /**
+     * Loads a page of sections. Called from a background thread if the pager loads in
+     * background, from the UI thread otherwise.
+     * @param start The position of the first section
+     * @param count The number of sections
+     * @return The sections, as the sections of a model in the same order. Their main and
+     * secondary types are ignored, they're given by getMainCount.
+     */
+    public SectionModel getSections(int start, int count);
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.adapters;
+
+import android.text.TextUtils;
+
+import org.arasthel.googlenavdrawermenu.utils.IconSource;
+
+/**
+ * Minimal set of changes between two section lists of a {@link GoogleNavigationDrawerAdapter}.
+ *
+ * Rows are matched by type and stable id, so sections with their own ids are followed even if
+ * they're moved or renamed, and sections without one by their label. Matched rows with anything
+ * bound to them changed (label, icon, icon source, enabled, checkable, group or id) are reported
+ * as changes, as are unmatched rows without their own id left in the
+ * same position (a renamed section). Everything else is an insert, a remove or, for matched rows
+ * out of order, a move.
+ */
+public class SectionsDiff {
+
+    /**
+     * Lists with more rows than this should be diffed off the UI thread.
+     */
+    public static final int BACKGROUND_DIFF_THRESHOLD = 250;
+
+    public static final int NO_POSITION = -1;
+
+    private int[] mOldToNew;
+    private int[] mNewToOld;
+    private boolean[] mChanged;
+
+    private int mInsertCount;
+    private int mRemoveCount;
+    private int mMoveCount;
+    private int mChangeCount;
+
+    private long mDiffTimeNanos;
+    private long mApplyTimeNanos;
+    private int mReboundRowCount;
+
+    private SectionsDiff(int oldSize, int newSize) {
+        mOldToNew = new int[oldSize];
+        mNewToOld = new int[newSize];
+        mChanged = new boolean[newSize];
+    }
+
+    /**
+     * Computes the changes needed to go from the old sections to the new ones. Doesn't touch any
+     * View, so it's safe to call from a background thread.
+     */
+    public static SectionsDiff calculate(SectionModel oldModel, SectionModel newModel) {
+        long start = System.nanoTime();
+
+        int oldSize = oldModel.getCount();
+        int newSize = newModel.getCount();
+
+        SectionsDiff diff = new SectionsDiff(oldSize, newSize);
+        for(int i = 0; i < oldSize; i++) {
+            diff.mOldToNew[i] = NO_POSITION;
+        }
+
+        for(int i = 0; i < newSize; i++) {
+            // Duplicated ids match the first section having it, the others are inserts
+            int oldPosition = oldModel.getPosition(newModel.getStableId(i));
+            if(oldPosition != NO_POSITION && diff.mOldToNew[oldPosition] == NO_POSITION
+                    && oldModel.getType(oldPosition) == newModel.getType(i)) {
+                diff.mNewToOld[i] = oldPosition;
+                diff.mOldToNew[oldPosition] = i;
+                diff.mChanged[i] = !isBoundTheSame(oldModel, oldPosition, newModel, i);
+            } else {
+                diff.mNewToOld[i] = NO_POSITION;
+            }
+        }
+
+        // A section without its own id that was renamed in place is a change, not a remove plus an insert
+        for(int i = 0; i < newSize && i < oldSize; i++) {
+            if(diff.mNewToOld[i] == NO_POSITION && diff.mOldToNew[i] == NO_POSITION
+                    && oldModel.getType(i) == newModel.getType(i)
+                    && oldModel.isStableIdDerived(i) && newModel.isStableIdDerived(i)) {
+                diff.mNewToOld[i] = i;
+                diff.mOldToNew[i] = i;
+                diff.mChanged[i] = true;
+            }
+        }
+
+        int matched = 0;
+        for(int i = 0; i < newSize; i++) {
+            if(diff.mNewToOld[i] == NO_POSITION) {
+                diff.mInsertCount++;
+            } else {
+                matched++;
+                if(diff.mChanged[i]) {
+                    diff.mChangeCount++;
+                }
+            }
+        }
+        diff.mRemoveCount = oldSize - matched;
+        diff.mMoveCount = matched - longestIncreasingRun(diff.mNewToOld);
+
+        diff.mDiffTimeNanos = System.nanoTime() - start;
+        return diff;
+    }
+
+    /**
+     * @return true if the row of the old section shows the same as the one of the new section
+     */
+    private static boolean isBoundTheSame(SectionModel oldModel, int oldPosition, SectionModel newModel, int newPosition) {
+        return TextUtils.equals(oldModel.getLabel(oldPosition), newModel.getLabel(newPosition))
+                && oldModel.getIcon(oldPosition) == newModel.getIcon(newPosition)
+                && isSameIconSource(oldModel.getIconSource(oldPosition), newModel.getIconSource(newPosition))
+                && oldModel.isEnabled(oldPosition) == newModel.isEnabled(newPosition)
+                && oldModel.isCheckable(oldPosition) == newModel.isCheckable(newPosition)
+                && oldModel.isGroup(oldPosition) == newModel.isGroup(newPosition)
+                && oldModel.getId(oldPosition) == newModel.getId(newPosition);
+    }
+
+    private static boolean isSameIconSource(IconSource oldSource, IconSource newSource) {
+        if(oldSource == null || newSource == null) {
+            return oldSource == newSource;
+        }
+        return oldSource.getKey().equals(newSource.getKey());
+    }
+
+    /**
+     * Length of the longest increasing subsequence of matched old positions. Rows outside of it
+     * are the ones that moved.
+     */
+    private static int longestIncreasingRun(int[] newToOld) {
+        int[] tails = new int[newToOld.length];
+        int length = 0;
+        for(int oldPosition : newToOld) {
+            if(oldPosition == NO_POSITION) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                if(tails[middle] < oldPosition) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            tails[low] = oldPosition;
+            if(low == length) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return true if rows were inserted, removed or moved, so positions are no longer the same
+     */
+    public boolean isStructural() {
+        return mInsertCount > 0 || mRemoveCount > 0 || mMoveCount > 0;
+    }
+
+    public boolean isEmpty() {
+        return !isStructural() && mChangeCount == 0;
+    }
+
+    /**
+     * @param oldPosition A section position in the old list
+     * @return Its position in the new list or NO_POSITION if it was removed
+     */
+    public int getNewPosition(int oldPosition) {
+        if(oldPosition < 0 || oldPosition >= mOldToNew.length) {
+            return NO_POSITION;
+        }
+        return mOldToNew[oldPosition];
+    }
+
+    /**
+     * @param newPosition A section position in the new list
+     * @return Its position in the old list or NO_POSITION if it was inserted
+     */
+    public int getOldPosition(int newPosition) {
+        if(newPosition < 0 || newPosition >= mNewToOld.length) {
+            return NO_POSITION;
+        }
+        return mNewToOld[newPosition];
+    }
+
+    /**
+     * @param newPosition A section position in the new list
+     * @return true if the row at this position has to be bound again
+     */
+    public boolean isChanged(int newPosition) {
+        return newPosition >= 0 && newPosition < mChanged.length
+                && (mChanged[newPosition] || mNewToOld[newPosition] == NO_POSITION);
+    }
+
+    public int getInsertCount() {
+        return mInsertCount;
+    }
+
+    public int getRemoveCount() {
+        return mRemoveCount;
+    }
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    /**
+     * @return Time spent computing the diff, in nanoseconds
+     */
+    public long getDiffTimeNanos() {
+        return mDiffTimeNanos;
+    }
+
+    /**
+     * @return Time spent applying the diff to the list, in nanoseconds
+     */
+    public long getApplyTimeNanos() {
+        return mApplyTimeNanos;
+    }
+
+    public void setApplyTimeNanos(long applyTimeNanos) {
+        this.mApplyTimeNanos = applyTimeNanos;
+    }
+
+    /**
+     * @return Number of on-screen rows that were bound again when the diff was applied
+     */
+    public int getReboundRowCount() {
+        return mReboundRowCount;
+    }
+
+    public void setReboundRowCount(int reboundRowCount) {
+        this.mReboundRowCount = reboundRowCount;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
+
+/**
+ * Keeps the constant states of the section icons, so every row showing the same icon shares
+ * its bitmap and binding a row doesn't have to resolve and decode the resource again.
+ *
+ * Resources only keeps weak references to the drawables it loads, so while scrolling they can
+ * be collected and decoded again. This cache keeps them until its memory budget is exceeded,
+ * evicting the least recently used ones first.
+ */
+public class DrawableCache {
+
+    public static final int DEFAULT_MAX_SIZE = 2 * 1024 * 1024;
+
+    private final Resources mResources;
+    private final StateCache mCache;
+
+    public DrawableCache(Resources resources) {
+        this(resources, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param resources The Resources used to load and create the drawables
+     * @param maxSizeBytes Approximate memory budget, in bytes
+     */
+    public DrawableCache(Resources resources, int maxSizeBytes) {
+        mResources = resources;
+        mCache = new StateCache(maxSizeBytes);
+    }
+
+    /**
+     * Returns a new drawable for the resource, sharing its constant state with the other
+     * drawables created for the same resource.
+     * @param resId The drawable resource id
+     * @return The drawable or null if resId isn't a valid id
+     */
+    public Drawable getDrawable(int resId) {
+        if(resId <= 0) {
+            return null;
+        }
+        Entry entry = mCache.get(resId);
+        if(entry != null) {
+            return entry.state.newDrawable(mResources);
+        }
+        Drawable drawable = mResources.getDrawable(resId);
+        if(drawable != null && drawable.getConstantState() != null) {
+            mCache.put(resId, new Entry(drawable.getConstantState(), estimateSize(drawable)));
+        }
+        return drawable;
+    }
+
+    /**
+     * Loads the given resources so they are already cached when they are first bound.
+     * @param resIds The drawable resource ids. May be null.
+     */
+    public void preload(int[] resIds) {
+        if(resIds == null) {
+            return;
+        }
+        for(int resId : resIds) {
+            if(resId > 0 && mCache.get(resId) == null) {
+                getDrawable(resId);
+            }
+        }
+    }
+
+    /**
+     * Releases memory depending on how much the system needs it.
+     * @param level The level received in ComponentCallbacks2.onTrimMemory
+     */
+    public void onTrimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mCache.evictAll();
+        } else if(level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * @return Approximate memory used by the cached drawables, in bytes
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    /**
+     * @return The memory budget, in bytes
+     */
+    public int getMaxSize() {
+        return mCache.maxSize();
+    }
+
+    private static class Entry {
+        final Drawable.ConstantState state;
+        final int size;
+
+        Entry(Drawable.ConstantState state, int size) {
+            this.state = state;
+            this.size = size;
+        }
+    }
+
+    private static class StateCache extends LruCache<Integer, Entry> {
+
+        public StateCache(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(Integer key, Entry value) {
+            return value.size;
+        }
+    }
+
+    private static int estimateSize(Drawable drawable) {
+        if(drawable instanceof BitmapDrawable) {
+            Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+            if(bitmap != null) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        }
+        // Not a bitmap (selectors, shapes...). Assume it's as big as an ARGB bitmap of its size.
+        return Math.max(1, drawable.getIntrinsicWidth() * drawable.getIntrinsicHeight() * 4);
+    }
+}
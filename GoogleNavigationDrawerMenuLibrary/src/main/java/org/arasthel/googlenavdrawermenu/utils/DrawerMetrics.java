@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.utils;
+
+/**
+ * Receives the performance metrics of a GoogleNavigationDrawer, i.e. to send them to a
+ * telemetry pipeline. All the methods are called on the UI thread and should return quickly.
+ *
+ * The drawer doesn't even take the timestamps while its metrics are NONE, the default.
+ */
+public interface DrawerMetrics {
+
+    /**
+     * Frames of the drawer being dragged or settling
+     */
+    public static final int FRAMES_DRAWER_SLIDE = 0;
+    /**
+     * Frames of the menu being flung
+     */
+    public static final int FRAMES_LIST_FLING = 1;
+
+    /**
+     * Called once, the first time the drawer moves after being opened or dragged
+     * @param latencyMillis Time since the open request, in milliseconds
+     */
+    public void onFirstOpen(long latencyMillis);
+
+    /**
+     * Called when getView has to create a new row because there's none to reuse
+     * @param type GoogleNavigationDrawerAdapter.TYPE_MAIN, TYPE_SECONDARY or TYPE_CHILD
+     * @param nanos Time spent creating it
+     */
+    public void onRowInflated(int type, long nanos);
+
+    /**
+     * Called for every row bound by getView, new or reused
+     * @param type GoogleNavigationDrawerAdapter.TYPE_MAIN, TYPE_SECONDARY or TYPE_CHILD
+     * @param nanos Time spent binding it, not including its creation
+     */
+    public void onRowBound(int type, long nanos);
+
+    /**
+     * Called when the drawer stops sliding or the menu stops being flung, requires Jelly Bean
+     * @param source FRAMES_DRAWER_SLIDE or FRAMES_LIST_FLING
+     * @param frameCount Number of frames drawn
+     * @param slowFrameCount Frames that took longer than one and a half refresh intervals
+     * @param droppedFrameCount Refresh intervals missed, i.e. frames that weren't drawn in time
+     * @param durationNanos Time between the first and the last frame
+     */
+    public void onFrames(int source, int frameCount, int slowFrameCount, int droppedFrameCount, long durationNanos);
+
+    /**
+     * Called for every section checked, by the user or by code
+     * @param nanos Time spent checking it
+     */
+    public void onCheck(long nanos);
+
+    /**
+     * Called when getView uses a row prefetched while the drawer was about to open, instead of
+     * creating and binding it then
+     * @param type GoogleNavigationDrawerAdapter.TYPE_MAIN, TYPE_SECONDARY or TYPE_CHILD
+     */
+    public void onPrefetchHit(int type);
+
+    /**
+     * Called for every prefetched row the list didn't use, because it didn't need that many or
+     * the sections were replaced before it was shown
+     * @param type GoogleNavigationDrawerAdapter.TYPE_MAIN, TYPE_SECONDARY or TYPE_CHILD
+     */
+    public void onPrefetchWasted(int type);
+
+    /**
+     * Called when the list has laid out the rows of new sections, in one frame or, with the
+     * chunked first render, in several
+     * @param frameCount Frames the drawer spent populating the list
+     * @param longestFrameNanos Time spent populating it in the longest of them
+     * @param durationNanos Time since the sections were set
+     */
+    public void onPopulated(int frameCount, long longestFrameNanos, long durationNanos);
+
+    /**
+     * Ignores everything
+     */
+    public static final DrawerMetrics NONE = new DrawerMetrics() {
+        @Override
+        public void onFirstOpen(long latencyMillis) {
+        }
+
+        @Override
+        public void onRowInflated(int type, long nanos) {
+        }
+
+        @Override
+        public void onRowBound(int type, long nanos) {
+        }
+
+        @Override
+        public void onFrames(int source, int frameCount, int slowFrameCount, int droppedFrameCount, long durationNanos) {
+        }
+
+        @Override
+        public void onCheck(long nanos) {
+        }
+
+        @Override
+        public void onPrefetchHit(int type) {
+        }
+
+        @Override
+        public void onPrefetchWasted(int type) {
+        }
+
+        @Override
+        public void onPopulated(int frameCount, long longestFrameNanos, long durationNanos) {
+        }
+    };
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.utils;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.os.Build;
+
+import org.arasthel.googlenavdrawermenu.adapters.SectionModel;
+
+import java.util.HashMap;
+
+/**
+ * Process-wide cache of the menus read from resources, so every activity showing the same
+ * drawer shares one parsed SectionModel and one icon cache instead of reading the arrays and
+ * decoding the icons again.
+ *
+ * Menus are keyed by the ids of their section and icon arrays and by the parts of the configuration
+ * of the Resources they were read with that select resources, i.e. the locale or the orientation,
+ * so activities with different configurations keep their own menus. When the configuration of
+ * the app changes everything is dropped, and the models are also dropped when the app is in the
+ * background and the system asks for memory. Themes aren't part of the key, the arrays of labels
+ * and drawable ids resolve the same with any theme.
+ *
+ * Only use it from the UI thread.
+ */
+public class DrawerModelRegistry {
+
+    private static DrawerModelRegistry sInstance;
+
+    /**
+     * A menu read from resources. Its arrays are shared by every drawer using it, don't modify them.
+     */
+    public static class Entry {
+        private final String[] mMainSections;
+        private final String[] mSecondarySections;
+        private final int[] mMainIcons;
+        private final int[] mSecondaryIcons;
+        private final SectionModel mModel;
+
+        private Entry(String[] mainSections, String[] secondarySections, int[] mainIcons, int[] secondaryIcons) {
+            mMainSections = mainSections;
+            mSecondarySections = secondarySections;
+            mMainIcons = mainIcons;
+            mSecondaryIcons = secondaryIcons;
+            mModel = SectionModel.fromArrays(mainSections, secondarySections, mainIcons, secondaryIcons);
+        }
+
+        public String[] getMainSections() {
+            return mMainSections;
+        }
+
+        public String[] getSecondarySections() {
+            return mSecondarySections;
+        }
+
+        public int[] getMainIcons() {
+            return mMainIcons;
+        }
+
+        public int[] getSecondaryIcons() {
+            return mSecondaryIcons;
+        }
+
+        public SectionModel getModel() {
+            return mModel;
+        }
+    }
+
+    private final Resources mResources;
+    private final HashMap<String, Entry> mEntries = new HashMap<String, Entry>();
+    private final Configuration mConfiguration = new Configuration();
+    private DrawableCache mDrawableCache;
+
+    private int mHitCount = 0;
+    private int mMissCount = 0;
+
+    private DrawerModelRegistry(Context context) {
+        mResources = context.getResources();
+        mConfiguration.setTo(mResources.getConfiguration());
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            registerCallbacks(context);
+        }
+    }
+
+    /**
+     * Before Ice Cream Sandwich the configuration of the app is checked on every get instead, and
+     * the drawers trim the shared icon cache from their onTrimMemory
+     */
+    @TargetApi(14)
+    private void registerCallbacks(Context context) {
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                DrawerModelRegistry.this.onTrimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+                checkConfiguration(newConfig);
+            }
+
+            @Override
+            public void onLowMemory() {
+                clear();
+            }
+        });
+    }
+
+    /**
+     * @param context Any context, the registry keeps the application context
+     * @return The registry of the process
+     */
+    public static DrawerModelRegistry getInstance(Context context) {
+        if(sInstance == null) {
+            sInstance = new DrawerModelRegistry(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the menu of these arrays, reading them only the first time for this configuration
+     * or after the configuration of the app changed.
+     * @param resources The Resources of the drawer, its configuration is part of the key
+     * @param mainSectionsId The id of the array of main sections or -1
+     * @param secondarySectionsId The id of the array of secondary sections or -1
+     * @param mainIconsId The id of the typed array of main section icons or -1
+     * @param secondaryIconsId The id of the typed array of secondary section icons or -1
+     * @return The shared menu
+     */
+    public Entry get(Resources resources, int mainSectionsId, int secondarySectionsId, int mainIconsId, int secondaryIconsId) {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            // The app's, not the drawer's, or activities with different ones would clear each other
+            checkConfiguration(mResources.getConfiguration());
+        }
+        String key = mainSectionsId + ":" + secondarySectionsId + ":" + mainIconsId + ":" + secondaryIconsId
+                + ":" + getConfigurationKey(resources.getConfiguration());
+        Entry entry = mEntries.get(key);
+        if(entry != null) {
+            mHitCount++;
+            return entry;
+        }
+        mMissCount++;
+        String[] mainSections = readStrings(resources, mainSectionsId);
+        String[] secondarySections = readStrings(resources, secondarySectionsId);
+        entry = new Entry(mainSections, secondarySections,
+                readDrawableIds(resources, mainIconsId, mainSections), readDrawableIds(resources, secondaryIconsId, secondarySections));
+        mEntries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Returns the icon cache shared by the drawers using the registry. It's created with the
+     * size asked the first time and emptied, not replaced, when the configuration changes.
+     * @param maxSizeBytes Approximate memory budget, in bytes
+     * @return The shared DrawableCache
+     */
+    public DrawableCache getDrawableCache(int maxSizeBytes) {
+        if(mDrawableCache == null) {
+            mDrawableCache = new DrawableCache(mResources, maxSizeBytes);
+        }
+        return mDrawableCache;
+    }
+
+    private void checkConfiguration(Configuration configuration) {
+        if(mConfiguration.diff(configuration) != 0) {
+            mConfiguration.setTo(configuration);
+            clear();
+        }
+    }
+
+    /**
+     * @return The fields of the configuration that resource qualifiers select on
+     */
+    private static String getConfigurationKey(Configuration configuration) {
+        StringBuilder key = new StringBuilder();
+        key.append(configuration.locale).append(':')
+                .append(configuration.mcc).append(':')
+                .append(configuration.mnc).append(':')
+                .append(configuration.orientation).append(':')
+                .append(configuration.screenLayout).append(':')
+                .append(configuration.uiMode).append(':')
+                .append(configuration.touchscreen).append(':')
+                .append(configuration.keyboard).append(':')
+                .append(configuration.keyboardHidden).append(':')
+                .append(configuration.navigation);
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
+            appendScreenSize(key, configuration);
+        }
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            appendDensity(key, configuration);
+        }
+        return key.toString();
+    }
+
+    @TargetApi(13)
+    private static void appendScreenSize(StringBuilder key, Configuration configuration) {
+        key.append(':').append(configuration.screenWidthDp)
+                .append(':').append(configuration.screenHeightDp)
+                .append(':').append(configuration.smallestScreenWidthDp);
+    }
+
+    @TargetApi(17)
+    private static void appendDensity(StringBuilder key, Configuration configuration) {
+        key.append(':').append(configuration.densityDpi);
+    }
+
+    /**
+     * Releases the models when the app is in the background and the icons depending on how much
+     * the system needs the memory.
+     * @param level The level received in ComponentCallbacks2.onTrimMemory
+     */
+    public void onTrimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            mEntries.clear();
+        }
+        if(mDrawableCache != null) {
+            mDrawableCache.onTrimMemory(level);
+        }
+    }
+
+    /**
+     * Drops every menu and empties the icon cache. Drawers keep the menus they already have, and
+     * keep sharing the same icon cache, so it stays within one memory budget.
+     */
+    public void clear() {
+        mEntries.clear();
+        if(mDrawableCache != null) {
+            mDrawableCache.clear();
+        }
+    }
+
+    /**
+     * @return Number of menus served from the registry
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return Number of menus read from resources
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    private static String[] readStrings(Resources resources, int arrayId) {
+        if(arrayId == -1) {
+            return null;
+        }
+        return Utils.convertToStringArray(resources.getTextArray(arrayId));
+    }
+
+    private static int[] readDrawableIds(Resources resources, int arrayId, String[] sections) {
+        if(sections == null) {
+            return null;
+        }
+        int[] drawableIds = new int[sections.length];
+        if(arrayId != -1) {
+            TypedArray drawables = resources.obtainTypedArray(arrayId);
+            for(int i = 0; i < sections.length; i++) {
+                drawableIds[i] = drawables.getResourceId(i, 0);
+            }
+            drawables.recycle();
+        }
+        return drawableIds;
+    }
+}
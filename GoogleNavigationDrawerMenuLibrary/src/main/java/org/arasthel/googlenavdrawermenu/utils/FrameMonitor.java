@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.utils;
+
+import android.annotation.TargetApi;
+import android.view.Choreographer;
+
+/**
+ * Counts the frames drawn while something animates, like the drawer sliding, and the ones that
+ * were late, and reports them to a DrawerMetrics when it stops. Requires Jelly Bean.
+ */
+@TargetApi(16)
+public class FrameMonitor implements Choreographer.FrameCallback {
+
+    private final int mSource;
+    private final long mFrameIntervalNanos;
+
+    private DrawerMetrics mMetrics;
+    private boolean mRunning = false;
+    private long mFirstFrameNanos;
+    private long mLastFrameNanos;
+    private int mFrameCount;
+    private int mSlowFrameCount;
+    private int mDroppedFrameCount;
+
+    /**
+     * @param source DrawerMetrics.FRAMES_DRAWER_SLIDE or FRAMES_LIST_FLING
+     * @param frameIntervalNanos The refresh interval of the display
+     */
+    public FrameMonitor(int source, long frameIntervalNanos) {
+        mSource = source;
+        mFrameIntervalNanos = frameIntervalNanos;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts counting frames. Does nothing if it's already counting them.
+     * @param metrics Where the frames are reported when it stops
+     */
+    public void start(DrawerMetrics metrics) {
+        if(mRunning) {
+            return;
+        }
+        mRunning = true;
+        mMetrics = metrics;
+        mFirstFrameNanos = 0;
+        mLastFrameNanos = 0;
+        mFrameCount = 0;
+        mSlowFrameCount = 0;
+        mDroppedFrameCount = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stops counting frames and reports them, if any was drawn
+     */
+    public void stop() {
+        if(!mRunning) {
+            return;
+        }
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        if(mFrameCount > 0) {
+            mMetrics.onFrames(mSource, mFrameCount, mSlowFrameCount, mDroppedFrameCount, mLastFrameNanos - mFirstFrameNanos);
+        }
+        mMetrics = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if(!mRunning) {
+            return;
+        }
+        if(mLastFrameNanos == 0) {
+            // The first callback only marks where the frames start
+            mFirstFrameNanos = frameTimeNanos;
+        } else {
+            long interval = frameTimeNanos - mLastFrameNanos;
+            mFrameCount++;
+            if(interval * 2 > mFrameIntervalNanos * 3) {
+                mSlowFrameCount++;
+            }
+            long missed = (interval + mFrameIntervalNanos / 2) / mFrameIntervalNanos - 1;
+            if(missed > 0) {
+                mDroppedFrameCount += missed;
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
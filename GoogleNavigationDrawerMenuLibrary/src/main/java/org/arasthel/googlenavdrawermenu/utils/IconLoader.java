@@ -0,0 +1,222 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.arasthel.googlenavdrawermenu.R;
+import org.arasthel.googlenavdrawermenu.views.NavigationRowView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads non-resource section icons in background threads and keeps the decoded bitmaps in a
+ * memory cache. Each target View has at most one request: binding a recycled row to another
+ * section cancels the request of the previous one.
+ */
+public class IconLoader {
+
+    private static final String TAG = "IconLoader";
+
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final int DECODE_THREADS = 2;
+
+    private static ExecutorService sDecodeExecutor;
+
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mBitmapCache;
+
+    public IconLoader(Context context) {
+        this(context, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param context A Context
+     * @param maxSizeBytes Memory budget of the decoded bitmaps, in bytes
+     */
+    public IconLoader(Context context, int maxSizeBytes) {
+        mContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        mBitmapCache = new LruCache<String, Bitmap>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    private static synchronized ExecutorService getDecodeExecutor() {
+        if(sDecodeExecutor == null) {
+            sDecodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "GoogleNavigationDrawer-icons");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sDecodeExecutor;
+    }
+
+    /**
+     * Show the icon in the target View, decoding it in background if it isn't in memory yet.
+     * Must be called from the UI thread.
+     * @param source The icon source. Resource sources are decoded as bitmaps too, use a DrawableCache to keep their states.
+     * @param target An ImageView or a NavigationRowView
+     * @param targetSize The size of the icon in pixels, bigger bitmaps are downsampled
+     * @param placeholder The drawable shown while loading or if loading fails. May be null.
+     */
+    public void load(IconSource source, View target, int targetSize, Drawable placeholder) {
+        cancel(target);
+
+        String key = source.getKey() + "@" + targetSize;
+        Bitmap bitmap = mBitmapCache.get(key);
+        if(bitmap != null) {
+            setIcon(target, new BitmapDrawable(mContext.getResources(), bitmap));
+            return;
+        }
+
+        setIcon(target, placeholder);
+        Request request = new Request(key, source, target, targetSize);
+        target.setTag(R.id.google_nav_drawer_icon_request, request);
+        request.mFuture = getDecodeExecutor().submit(request);
+    }
+
+    /**
+     * Cancels the pending request of a View, if any.
+     * @param target The target View
+     */
+    public void cancel(View target) {
+        Object pending = target.getTag(R.id.google_nav_drawer_icon_request);
+        if(pending instanceof Request) {
+            ((Request) pending).cancel();
+            target.setTag(R.id.google_nav_drawer_icon_request, null);
+        }
+    }
+
+    private static void setIcon(View target, Drawable icon) {
+        if(target instanceof ImageView) {
+            ((ImageView) target).setImageDrawable(icon);
+        } else if(target instanceof NavigationRowView) {
+            ((NavigationRowView) target).setIcon(icon);
+        }
+    }
+
+    /**
+     * Releases memory depending on how much the system needs it.
+     * @param level The level received in ComponentCallbacks2.onTrimMemory
+     */
+    public void onTrimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mBitmapCache.evictAll();
+        } else if(level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mBitmapCache.trimToSize(mBitmapCache.maxSize() / 2);
+        }
+    }
+
+    public int getHitCount() {
+        return mBitmapCache.hitCount();
+    }
+
+    public int getMissCount() {
+        return mBitmapCache.missCount();
+    }
+
+    /**
+     * @return Memory used by the decoded bitmaps, in bytes
+     */
+    public int getSize() {
+        return mBitmapCache.size();
+    }
+
+    public int getMaxSize() {
+        return mBitmapCache.maxSize();
+    }
+
+    private class Request implements Runnable {
+        private final String mKey;
+        private final IconSource mSource;
+        private final View mTarget;
+        private final int mTargetSize;
+        private volatile boolean mCancelled = false;
+        private Future<?> mFuture;
+
+        Request(String key, IconSource source, View target, int targetSize) {
+            mKey = key;
+            mSource = source;
+            mTarget = target;
+            mTargetSize = targetSize;
+        }
+
+        void cancel() {
+            mCancelled = true;
+            if(mFuture != null) {
+                mFuture.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if(mCancelled) {
+                return;
+            }
+            Bitmap decoded = null;
+            try {
+                decoded = mSource.decode(mContext, mTargetSize);
+            } catch (Exception e) {
+                Log.w(TAG, "Couldn't load icon " + mSource.getKey(), e);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "Not enough memory to load icon " + mSource.getKey());
+            }
+            final Bitmap bitmap = decoded;
+            BackgroundWorker.postToMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    if(bitmap != null) {
+                        mBitmapCache.put(mKey, bitmap);
+                    }
+                    if(mCancelled || mTarget.getTag(R.id.google_nav_drawer_icon_request) != Request.this) {
+                        return;
+                    }
+                    mTarget.setTag(R.id.google_nav_drawer_icon_request, null);
+                    if(bitmap != null) {
+                        setIcon(mTarget, new BitmapDrawable(mContext.getResources(), bitmap));
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where the icon of a section comes from: a drawable resource, a file, an Uri or a custom
+ * BitmapLoader. Anything but resources is decoded in a background thread by the IconLoader and
+ * downsampled to the size of the section icon.
+ */
+public abstract class IconSource {
+
+    /**
+     * Loads the bitmap of a custom icon source. Called from a background thread.
+     */
+    public interface BitmapLoader {
+
+        /**
+         * @param context A Context
+         * @param targetSize The size of the icon, in pixels. Bitmaps bigger than this should be downsampled.
+         * @return The bitmap or null if it couldn't be loaded
+         */
+        public Bitmap loadBitmap(Context context, int targetSize) throws IOException;
+
+    }
+
+    public static IconSource fromResource(int resId) {
+        return new ResourceSource(resId);
+    }
+
+    public static IconSource fromFile(File file) {
+        return new FileSource(file);
+    }
+
+    public static IconSource fromUri(Uri uri) {
+        return new UriSource(uri);
+    }
+
+    /**
+     * @param key A unique key for this icon, used to cache it
+     * @param loader The loader that will decode it
+     */
+    public static IconSource fromLoader(String key, BitmapLoader loader) {
+        return new LoaderSource(key, loader);
+    }
+
+    /**
+     * @return A key that identifies the icon, used to cache it
+     */
+    public abstract String getKey();
+
+    /**
+     * @return The drawable resource id if this is a resource icon, -1 otherwise
+     */
+    public int getResourceId() {
+        return -1;
+    }
+
+    /**
+     * Decodes the icon. Called from a background thread, never for resource icons.
+     */
+    abstract Bitmap decode(Context context, int targetSize) throws IOException;
+
+    /**
+     * Decodes a file, downsampled so it's not much bigger than targetSize. Useful for custom
+     * BitmapLoaders.
+     */
+    public static Bitmap decodeSampledFile(String path, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        options.inSampleSize = calculateSampleSize(options, targetSize);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    /**
+     * Largest power of two that keeps both sides of the image at least as big as targetSize
+     */
+    static int calculateSampleSize(BitmapFactory.Options options, int targetSize) {
+        int sampleSize = 1;
+        if(targetSize <= 0) {
+            return sampleSize;
+        }
+        while(options.outWidth / (sampleSize * 2) >= targetSize && options.outHeight / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static class ResourceSource extends IconSource {
+        private final int mResId;
+
+        ResourceSource(int resId) {
+            mResId = resId;
+        }
+
+        @Override
+        public String getKey() {
+            return "res:" + mResId;
+        }
+
+        @Override
+        public int getResourceId() {
+            return mResId;
+        }
+
+        @Override
+        Bitmap decode(Context context, int targetSize) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(context.getResources(), mResId, options);
+            options.inSampleSize = calculateSampleSize(options, targetSize);
+            options.inJustDecodeBounds = false;
+            return BitmapFactory.decodeResource(context.getResources(), mResId, options);
+        }
+    }
+
+    private static class FileSource extends IconSource {
+        private final File mFile;
+
+        FileSource(File file) {
+            mFile = file;
+        }
+
+        @Override
+        public String getKey() {
+            return "file:" + mFile.getAbsolutePath();
+        }
+
+        @Override
+        Bitmap decode(Context context, int targetSize) {
+            return decodeSampledFile(mFile.getAbsolutePath(), targetSize);
+        }
+    }
+
+    private static class UriSource extends IconSource {
+        private final Uri mUri;
+
+        UriSource(Uri uri) {
+            mUri = uri;
+        }
+
+        @Override
+        public String getKey() {
+            return "uri:" + mUri;
+        }
+
+        @Override
+        Bitmap decode(Context context, int targetSize) throws IOException {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            InputStream in = context.getContentResolver().openInputStream(mUri);
+            try {
+                BitmapFactory.decodeStream(in, null, options);
+            } finally {
+                in.close();
+            }
+            options.inSampleSize = calculateSampleSize(options, targetSize);
+            options.inJustDecodeBounds = false;
+            in = context.getContentResolver().openInputStream(mUri);
+            try {
+                return BitmapFactory.decodeStream(in, null, options);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static class LoaderSource extends IconSource {
+        private final String mKey;
+        private final BitmapLoader mLoader;
+
+        LoaderSource(String key, BitmapLoader loader) {
+            mKey = key;
+            mLoader = loader;
+        }
+
+        @Override
+        public String getKey() {
+            return "loader:" + mKey;
+        }
+
+        @Override
+        Bitmap decode(Context context, int targetSize) throws IOException {
+            return mLoader.loadBitmap(context, targetSize);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.utils;
+
+/**
+ * DrawerMetrics that adds everything up in memory, to read it in tests or log it.
+ */
+public class InMemoryDrawerMetrics implements DrawerMetrics {
+
+    private long mFirstOpenLatencyMillis = -1;
+
+    private int mRowInflationCount;
+    private long mRowInflationNanos;
+    private long mMaxRowInflationNanos;
+
+    private int mRowBindCount;
+    private long mRowBindNanos;
+    private long mMaxRowBindNanos;
+
+    private int mCheckCount;
+    private long mCheckNanos;
+    private long mMaxCheckNanos;
+
+    private int mPrefetchHitCount;
+    private int mPrefetchWasteCount;
+
+    private int mPopulationCount;
+    private long mMaxPopulationFrameNanos;
+    private long mLastPopulationFrameNanos;
+    private int mLastPopulationFrameCount;
+
+    private final int[] mFrameCounts = new int[2];
+    private final int[] mSlowFrameCounts = new int[2];
+    private final int[] mDroppedFrameCounts = new int[2];
+    private final long[] mFrameNanos = new long[2];
+
+    @Override
+    public void onFirstOpen(long latencyMillis) {
+        mFirstOpenLatencyMillis = latencyMillis;
+    }
+
+    @Override
+    public void onRowInflated(int type, long nanos) {
+        mRowInflationCount++;
+        mRowInflationNanos += nanos;
+        mMaxRowInflationNanos = Math.max(mMaxRowInflationNanos, nanos);
+    }
+
+    @Override
+    public void onRowBound(int type, long nanos) {
+        mRowBindCount++;
+        mRowBindNanos += nanos;
+        mMaxRowBindNanos = Math.max(mMaxRowBindNanos, nanos);
+    }
+
+    @Override
+    public void onFrames(int source, int frameCount, int slowFrameCount, int droppedFrameCount, long durationNanos) {
+        mFrameCounts[source] += frameCount;
+        mSlowFrameCounts[source] += slowFrameCount;
+        mDroppedFrameCounts[source] += droppedFrameCount;
+        mFrameNanos[source] += durationNanos;
+    }
+
+    @Override
+    public void onCheck(long nanos) {
+        mCheckCount++;
+        mCheckNanos += nanos;
+        mMaxCheckNanos = Math.max(mMaxCheckNanos, nanos);
+    }
+
+    @Override
+    public void onPrefetchHit(int type) {
+        mPrefetchHitCount++;
+    }
+
+    @Override
+    public void onPrefetchWasted(int type) {
+        mPrefetchWasteCount++;
+    }
+
+    @Override
+    public void onPopulated(int frameCount, long longestFrameNanos, long durationNanos) {
+        mPopulationCount++;
+        mMaxPopulationFrameNanos = Math.max(mMaxPopulationFrameNanos, longestFrameNanos);
+        mLastPopulationFrameNanos = longestFrameNanos;
+        mLastPopulationFrameCount = frameCount;
+    }
+
+    /**
+     * @return The latency of the first open in milliseconds or -1 if it hasn't been opened
+     */
+    public long getFirstOpenLatencyMillis() {
+        return mFirstOpenLatencyMillis;
+    }
+
+    public int getRowInflationCount() {
+        return mRowInflationCount;
+    }
+
+    public long getRowInflationNanos() {
+        return mRowInflationNanos;
+    }
+
+    public long getMaxRowInflationNanos() {
+        return mMaxRowInflationNanos;
+    }
+
+    public int getRowBindCount() {
+        return mRowBindCount;
+    }
+
+    public long getRowBindNanos() {
+        return mRowBindNanos;
+    }
+
+    public long getMaxRowBindNanos() {
+        return mMaxRowBindNanos;
+    }
+
+    /**
+     * @return The mean bind time per row in nanoseconds, or 0 if nothing was bound
+     */
+    public long getMeanRowBindNanos() {
+        return mRowBindCount == 0 ? 0 : mRowBindNanos / mRowBindCount;
+    }
+
+    public int getCheckCount() {
+        return mCheckCount;
+    }
+
+    public long getCheckNanos() {
+        return mCheckNanos;
+    }
+
+    public long getMaxCheckNanos() {
+        return mMaxCheckNanos;
+    }
+
+    public int getPrefetchHitCount() {
+        return mPrefetchHitCount;
+    }
+
+    public int getPrefetchWasteCount() {
+        return mPrefetchWasteCount;
+    }
+
+    public int getPopulationCount() {
+        return mPopulationCount;
+    }
+
+    /**
+     * @return The longest frame of all the populations of the list, in nanoseconds
+     */
+    public long getMaxPopulationFrameNanos() {
+        return mMaxPopulationFrameNanos;
+    }
+
+    /**
+     * @return The longest frame of the last population of the list, in nanoseconds
+     */
+    public long getLastPopulationFrameNanos() {
+        return mLastPopulationFrameNanos;
+    }
+
+    public int getLastPopulationFrameCount() {
+        return mLastPopulationFrameCount;
+    }
+
+    /**
+     * @param source FRAMES_DRAWER_SLIDE or FRAMES_LIST_FLING
+     */
+    public int getFrameCount(int source) {
+        return mFrameCounts[source];
+    }
+
+    public int getSlowFrameCount(int source) {
+        return mSlowFrameCounts[source];
+    }
+
+    public int getDroppedFrameCount(int source) {
+        return mDroppedFrameCounts[source];
+    }
+
+    public long getFrameNanos(int source) {
+        return mFrameNanos[source];
+    }
+
+    /**
+     * Forgets everything measured so far
+     */
+    public void reset() {
+        mFirstOpenLatencyMillis = -1;
+        mRowInflationCount = 0;
+        mRowInflationNanos = 0;
+        mMaxRowInflationNanos = 0;
+        mRowBindCount = 0;
+        mRowBindNanos = 0;
+        mMaxRowBindNanos = 0;
+        mCheckCount = 0;
+        mCheckNanos = 0;
+        mMaxCheckNanos = 0;
+        mPrefetchHitCount = 0;
+        mPrefetchWasteCount = 0;
+        mPopulationCount = 0;
+        mMaxPopulationFrameNanos = 0;
+        mLastPopulationFrameNanos = 0;
+        mLastPopulationFrameCount = 0;
+        for(int i = 0; i < mFrameCounts.length; i++) {
+            mFrameCounts[i] = 0;
+            mSlowFrameCounts[i] = 0;
+            mDroppedFrameCounts[i] = 0;
+            mFrameNanos[i] = 0;
+        }
+    }
+}
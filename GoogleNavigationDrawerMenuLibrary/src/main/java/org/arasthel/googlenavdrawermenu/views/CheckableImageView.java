@@ -35,6 +35,9 @@ public class CheckableImageView extends ImageView implements Checkable {
 
     @Override
     public void setChecked(boolean b) {
+        if(checked == b) {
+            return;
+        }
         checked = b;
         refreshDrawableState();
     }
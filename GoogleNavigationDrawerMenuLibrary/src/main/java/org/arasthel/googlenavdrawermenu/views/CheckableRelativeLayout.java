@@ -13,10 +13,21 @@ public class CheckableRelativeLayout extends RelativeLayout implements Checkable
     private boolean checked = false;
     private static final int[] CHECKED_STATE_SET = { android.R.attr.state_checked };
 
+    // Found once instead of on every change of the checked state
+    private CheckedTextView mTextView;
+    private CheckableImageView mIconView;
+
     public CheckableRelativeLayout(Context context, AttributeSet attrs) {
         super(context, attrs);
     }
 
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+        mTextView = (CheckedTextView) findViewById(android.R.id.text1);
+        mIconView = (CheckableImageView) findViewById(android.R.id.icon);
+    }
+
     @Override
     protected int[] onCreateDrawableState(int extraSpace) {
         final int[] drawableState = super.onCreateDrawableState(extraSpace + 1);
@@ -27,8 +38,15 @@ public class CheckableRelativeLayout extends RelativeLayout implements Checkable
 
     @Override
     public void setChecked(boolean b) {
-        ((CheckedTextView) findViewById(android.R.id.text1)).setChecked(b);
-        ((CheckableImageView) findViewById(android.R.id.icon)).setChecked(b);
+        if(checked == b) {
+            return;
+        }
+        if(mTextView != null) {
+            mTextView.setChecked(b);
+        }
+        if(mIconView != null) {
+            mIconView.setChecked(b);
+        }
         checked = b;
         refreshDrawableState();
     }
@@ -1,8 +1,10 @@
 package org.arasthel.googlenavdrawermenu.views;
 
 import android.content.Context;
+import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.util.AttributeSet;
+import android.view.ViewGroup;
 import android.widget.Checkable;
 import android.widget.TextView;
 
@@ -12,6 +14,14 @@ import android.widget.TextView;
 public class CheckedTextView extends TextView implements Checkable {
 
     private boolean checked = false;
+    private boolean mBlockLayoutRequests = false;
+
+    // Only used from the UI thread
+    private static final Paint sMeasurePaint = new Paint();
+    private static final Paint.FontMetricsInt sNormalMetrics = new Paint.FontMetricsInt();
+    private static final Paint.FontMetricsInt sBoldMetrics = new Paint.FontMetricsInt();
+    private static float sMetricsTextSize = -1;
+    private static boolean sSameMetrics;
 
     public CheckedTextView(Context context) {
         super(context);
@@ -28,12 +38,56 @@ public class CheckedTextView extends TextView implements Checkable {
 
     @Override
     public void setChecked(boolean b) {
+        if(checked == b) {
+            return;
+        }
         checked = b;
-        if(isChecked()) {
-            setTypeface(null, Typeface.BOLD);
-        } else {
-            setTypeface(null, Typeface.NORMAL);
+        int style = b ? Typeface.BOLD : Typeface.NORMAL;
+        // If the text keeps its size the parents don't need a layout, the text layout is
+        // created again when it's drawn
+        mBlockLayoutRequests = keepsSize(style);
+        setTypeface(null, style);
+        mBlockLayoutRequests = false;
+    }
+
+    @Override
+    public void requestLayout() {
+        if(mBlockLayoutRequests) {
+            forceLayout();
+            return;
+        }
+        super.requestLayout();
+    }
+
+    /**
+     * @return true if the text has the same size with this style: both styles have the same
+     * font metrics, the width doesn't depend on the text and it still fits in one line
+     */
+    private boolean keepsSize(int style) {
+        ViewGroup.LayoutParams params = getLayoutParams();
+        if(params == null || params.width == ViewGroup.LayoutParams.WRAP_CONTENT || getLayout() == null
+                || getLayout().getLineCount() != 1 || !hasSameMetrics(getTextSize())) {
+            return false;
+        }
+        CharSequence text = getText();
+        sMeasurePaint.setTypeface(Typeface.defaultFromStyle(style));
+        float width = sMeasurePaint.measureText(text, 0, text.length());
+        return width <= getWidth() - getCompoundPaddingLeft() - getCompoundPaddingRight();
+    }
+
+    private static boolean hasSameMetrics(float textSize) {
+        if(textSize != sMetricsTextSize) {
+            sMeasurePaint.setTextSize(textSize);
+            sMeasurePaint.setTypeface(Typeface.defaultFromStyle(Typeface.NORMAL));
+            sMeasurePaint.getFontMetricsInt(sNormalMetrics);
+            sMeasurePaint.setTypeface(Typeface.defaultFromStyle(Typeface.BOLD));
+            sMeasurePaint.getFontMetricsInt(sBoldMetrics);
+            sSameMetrics = sNormalMetrics.top == sBoldMetrics.top && sNormalMetrics.ascent == sBoldMetrics.ascent
+                    && sNormalMetrics.descent == sBoldMetrics.descent && sNormalMetrics.bottom == sBoldMetrics.bottom
+                    && sNormalMetrics.leading == sBoldMetrics.leading;
+            sMetricsTextSize = textSize;
         }
+        return sSameMetrics;
     }
 
     @Override
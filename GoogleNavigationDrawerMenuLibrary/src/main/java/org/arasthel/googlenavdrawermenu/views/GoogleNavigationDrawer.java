@@ -16,28 +16,74 @@ package org.arasthel.googlenavdrawermenu.views;
 
 import android.annotation.TargetApi;
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.database.DataSetObserver;
+import android.graphics.Color;
 import android.graphics.drawable.Drawable;
-import android.os.Bundle;
+import android.os.Build;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.MessageQueue;
 import android.os.Parcelable;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.support.v4.widget.DrawerLayout;
 import android.util.AttributeSet;
 import android.support.v4.view.GravityCompat;
+import android.support.v4.view.ViewCompat;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.view.Gravity;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
-import android.widget.ListAdapter;
+import android.widget.Checkable;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
 import android.widget.ListView;
 
 import org.arasthel.googlenavdrawermenu.R;
+import org.arasthel.googlenavdrawermenu.adapters.ChildProvider;
 import org.arasthel.googlenavdrawermenu.adapters.GoogleNavigationDrawerAdapter;
+import org.arasthel.googlenavdrawermenu.adapters.RecycledRowPool;
+import org.arasthel.googlenavdrawermenu.adapters.SectionBadges;
+import org.arasthel.googlenavdrawermenu.adapters.SectionIndex;
+import org.arasthel.googlenavdrawermenu.adapters.SectionModel;
+import org.arasthel.googlenavdrawermenu.adapters.SectionPager;
+import org.arasthel.googlenavdrawermenu.adapters.SectionSource;
+import org.arasthel.googlenavdrawermenu.adapters.SectionsDiff;
+import org.arasthel.googlenavdrawermenu.utils.BackgroundWorker;
+import org.arasthel.googlenavdrawermenu.utils.DrawableCache;
+import org.arasthel.googlenavdrawermenu.utils.DrawerModelRegistry;
+import org.arasthel.googlenavdrawermenu.utils.DrawerMetrics;
+import org.arasthel.googlenavdrawermenu.utils.FrameMonitor;
+import org.arasthel.googlenavdrawermenu.utils.IconLoader;
+import org.arasthel.googlenavdrawermenu.utils.IconSource;
 import org.arasthel.googlenavdrawermenu.utils.Utils;
 
+import java.util.ArrayList;
+
 public class GoogleNavigationDrawer extends DrawerLayout {
 
     private ListView mListView;
 
+    private GoogleNavigationDrawerAdapter mAdapter;
+
+    private RecycledRowPool mRowPool = new RecycledRowPool();
+
+    private int mSectionsUpdateGeneration = 0;
+    private SectionsDiff mLastSectionsDiff;
+
     private int mListPaddingTop = 0;
     private int mListPaddingBottom = 0;
     private int mListPaddingLeft = 0;
@@ -70,11 +116,153 @@ public class GoogleNavigationDrawer extends DrawerLayout {
     private View mHeaderView;
     private View mFooterView;
 
+    /**
+     * Header and footer views are wrapped in these slots, so they can be replaced without
+     * re-creating the ListView (which can't add headers once it has an adapter before KitKat).
+     */
+    private FrameLayout mHeaderSlot;
+    private FrameLayout mFooterSlot;
+    private ListView mHeaderSlotList;
+    private ListView mFooterSlotList;
+
+    private int mListInflationCount = 0;
+    private int mListRebuildsAvoided = 0;
+
     private boolean mHeaderClickable = true;
     private boolean mFooterClickable = true;
 	private boolean mSecondarySectionsClickable = true;
 
+    private boolean mUseFlatRows = false;
+
+    private int mPreInflatedMainRows = 0;
+    private int mPreInflatedSecondaryRows = 0;
+    private boolean mPreInflationScheduled = false;
+
+    private DrawableCache mDrawableCache;
+    private int mIconCacheSize = DrawableCache.DEFAULT_MAX_SIZE;
+    private ComponentCallbacks2 mTrimMemoryCallbacks;
+
+    private IconLoader mIconLoader;
+    private IconSource[] mMainSectionsIconSources;
+    private IconSource[] mSecondarySectionsIconSources;
+    private int mIconPlaceholderResId = -1;
+
+    private ChildProvider mChildProvider;
+    private boolean mLoadChildrenInBackground = false;
+
+    private DrawerListener mUserDrawerListener;
+
+    /**
+     * Attributes whose resources are only resolved on the first idle or open when the
+     * list_lazyConfiguration attribute is set
+     */
+    private static class DeferredAttributes {
+        public int listBackgroundId = -1;
+        public int mainDividerId = -1;
+        public int secondaryDividerId = -1;
+        public int mainDrawablesId = -1;
+        public int secondaryDrawablesId = -1;
+        public int headerLayoutId = -1;
+        public int footerLayoutId = -1;
+        public boolean preloadIcons;
+        public int sectionsGeneration;
+    }
+
+    private static final String TRACE_CONFIGURE = "GoogleNavDrawer:configure";
+    private static final String TRACE_DEFERRED_CONFIGURE = "GoogleNavDrawer:deferredConfigure";
+
+    private DeferredAttributes mDeferredAttributes;
+    private boolean mDeferredResolutionScheduled = false;
+    private long mConfigurationTimeNanos = 0;
+    private long mDeferredConfigurationTimeNanos = 0;
+
+    /**
+     * The ListView is created when the drawer is inflated
+     */
+    public static final int DEFER_LIST_NONE = 0;
+    /**
+     * The ListView is created on the first idle moment, or before if the drawer is opened
+     */
+    public static final int DEFER_LIST_UNTIL_IDLE = 1;
+    /**
+     * The ListView is created the first time the drawer is opened or dragged
+     */
+    public static final int DEFER_LIST_UNTIL_OPEN = 2;
+
+    private static final String TRACE_CREATE_LIST = "GoogleNavDrawer:createList";
+
+    private int mListDeferral = DEFER_LIST_NONE;
+    /**
+     * While the ListView creation is deferred this empty container is the drawer and the calls
+     * that need the ListView are kept in mPendingListCalls, to be replayed once it's created.
+     * It also holds the filter bar above the ListView.
+     */
+    private LinearLayout mListContainer;
+    /**
+     * True while the drawer is inflated from XML, until onFinishInflate. The content isn't a child
+     * yet, so the drawer view is only added then: DrawerLayout needs it after the content, both to
+     * draw it on top and to give it the touches on it.
+     */
+    private boolean mWaitingForInflation = false;
+    private ArrayList<Runnable> mPendingListCalls;
+    private boolean mListCreationScheduled = false;
+    private long mListCreationTimeNanos = 0;
+
+    private EditText mFilterBar;
+    /**
+     * The sections set with setListViewSections, while the adapter may only have the ones
+     * matching the filter
+     */
+    private SectionModel mUnfilteredModel;
+    private SectionIndex mSectionIndex;
+    private SectionIndex.Result mLastFilterResult;
+    private String mFilterQuery = "";
+    private int mFilterGeneration = 0;
+
+    private SectionBadges mBadges = new SectionBadges();
+    private boolean mBadgeUpdateScheduled = false;
+    private int mBadgeUpdateCount = 0;
+    private int mBadgeRowsRebound = 0;
+
+    private long mOpenRequestTime = -1;
+    private long mFirstOpenLatency = -1;
+
+    private boolean mOptimizedSlide = false;
+
+    private boolean mUseSharedModel = false;
+    private boolean mPrecomputeLabels = false;
+
+    // Same as the edge DrawerLayout drags the drawer from
+    private static final int PREFETCH_EDGE_SIZE_DP = 20;
+    // A quarter of a frame at 60 fps, the rest is left to the frame itself
+    private static final long DEFAULT_CHUNK_FRAME_BUDGET_NANOS = 4000000;
+
+    private boolean mPrefetchOnSlide = false;
+    private boolean mChunkedFirstRender = false;
+    private long mChunkFrameBudgetNanos = DEFAULT_CHUNK_FRAME_BUDGET_NANOS;
+    private boolean mChunkedPopulationScheduled = false;
+    private boolean mListHiddenForPopulation = false;
+    // Once the list has shown rows, new sections replace them in place instead of hiding it
+    private boolean mListRowsShown = false;
+    private int mPopulationPosition;
+    private int mPopulationTarget;
+
+    private boolean mPopulating = false;
+    private long mPopulationStartNanos;
+    private int mPopulationFrames;
+    private long mPopulationLongestFrameNanos;
+    private long mLastPopulationLongestFrameNanos = 0;
+    // The sections read from the attributes, when they're shared with the other drawers
+    private DrawerModelRegistry.Entry mSharedSections;
+
+    private DrawerMetrics mMetrics = DrawerMetrics.NONE;
+    private FrameMonitor mSlideFrameMonitor;
+    private FrameMonitor mFlingFrameMonitor;
+
     private int checkPosition;
+    private long mCheckedSectionId = SectionModel.NO_STABLE_ID;
+    // List position of the header or footer checked, which the adapter doesn't keep
+    private int mCheckedFixedRow = AdapterView.INVALID_POSITION;
 
     private Activity mActivity;
 
@@ -82,10 +270,13 @@ public class GoogleNavigationDrawer extends DrawerLayout {
 
     public GoogleNavigationDrawer(Context context) {
         super(context);
+        init();
     }
 
     public GoogleNavigationDrawer(Context context, AttributeSet attrs) {
         super(context, attrs);
+        init();
+        mWaitingForInflation = true;
         TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.GoogleNavigationDrawer, 0, 0);
 
         configureWithTypedArray(a);
@@ -93,316 +284,2161 @@ public class GoogleNavigationDrawer extends DrawerLayout {
 
     public GoogleNavigationDrawer(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+        init();
+        mWaitingForInflation = true;
 
         TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.GoogleNavigationDrawer, defStyle, 0);
 
         configureWithTypedArray(a);
     }
 
+    private void init() {
+        super.setDrawerListener(mDrawerListener);
+    }
+
     /**
      * We need to override onFinishInflate so that it adds the ListView when it has finished inflating itself
      */
     @Override
     protected void onFinishInflate() {
         super.onFinishInflate();
-        setListViewSections(mMainSections, mSecondarySections, mMainSectionsDrawableIds, mSecondarySectionsDrawableIds);
+        mWaitingForInflation = false;
+        View drawerView = mListContainer != null ? mListContainer : mListView;
+        if(drawerView != null && drawerView.getParent() == null) {
+            // Created by the attributes, it goes after the content
+            addView(drawerView);
+        }
+        if(mPendingListCalls != null) {
+            // The fields are read when the list is created, so lazily loaded icons are included
+            deferListCall(new Runnable() {
+                @Override
+                public void run() {
+                    setSectionsFromAttributes();
+                }
+            });
+            return;
+        }
+        setSectionsFromAttributes();
+        if(mDeferredAttributes != null) {
+            mDeferredAttributes.sectionsGeneration = mSectionsUpdateGeneration;
+        }
     }
 
     /**
-     * Add the feature to set the titles automatically to the section's names
-     * @param activity The activity whose title will change or not
-     * @param shouldChangeTitle True if it should change
+     * Sets the sections read from the attributes, using the shared model if they're still the
+     * shared arrays
      */
-    public void setShouldChangeTitle(Activity activity, boolean shouldChangeTitle) {
-        if (shouldChangeTitle)
-            mActivity = activity;
-        else
-            mActivity = null;
-        mShouldChangeTitle = shouldChangeTitle;
+    private void setSectionsFromAttributes() {
+        DrawerModelRegistry.Entry shared = mSharedSections;
+        if(shared != null && shared.getMainSections() == mMainSections && shared.getSecondarySections() == mSecondarySections
+                && shared.getMainIcons() == mMainSectionsDrawableIds && shared.getSecondaryIcons() == mSecondarySectionsDrawableIds) {
+            setListViewSections(shared.getModel());
+        } else {
+            setListViewSections(mMainSections, mSecondarySections, mMainSectionsDrawableIds, mSecondarySectionsDrawableIds);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        scheduleListCreation();
+        scheduleDeferredResolution();
+        schedulePreInflation();
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH && !isInEditMode()) {
+            registerTrimMemoryCallbacks();
+        }
+    }
+
+    @TargetApi(14)
+    private void registerTrimMemoryCallbacks() {
+        if(mTrimMemoryCallbacks == null) {
+            mTrimMemoryCallbacks = new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    GoogleNavigationDrawer.this.onTrimMemory(level);
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    GoogleNavigationDrawer.this.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+                }
+            };
+        }
+        getContext().getApplicationContext().registerComponentCallbacks(mTrimMemoryCallbacks);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if(mTrimMemoryCallbacks != null) {
+            getContext().getApplicationContext().unregisterComponentCallbacks(mTrimMemoryCallbacks);
+        }
+        if(mPreInflationScheduled) {
+            Looper.myQueue().removeIdleHandler(mPreInflater);
+            mPreInflationScheduled = false;
+        }
+        if(mDeferredResolutionScheduled) {
+            Looper.myQueue().removeIdleHandler(mDeferredResolver);
+            mDeferredResolutionScheduled = false;
+        }
+        if(mListCreationScheduled) {
+            Looper.myQueue().removeIdleHandler(mListCreator);
+            mListCreationScheduled = false;
+        }
+        revealPopulatedList();
+        monitorFrames(DrawerMetrics.FRAMES_DRAWER_SLIDE, false);
+        monitorFrames(DrawerMetrics.FRAMES_LIST_FLING, false);
     }
 
     /**
-     * Change list background to the drawable.
-     * @param d Drawable to set as background
+     * GoogleNavigationDrawer needs to know about the drawer state, so the listener is wrapped
+     * instead of replacing the internal one.
+     * @param listener The DrawerListener
      */
-    @TargetApi(16)
-    public void setListBackground(Drawable d) {
-        mListBackground = d;
-        int sdk = android.os.Build.VERSION.SDK_INT;
-        if(sdk < android.os.Build.VERSION_CODES.JELLY_BEAN) {
-            mListView.setBackgroundDrawable(mListBackground);
-        } else {
-            mListView.setBackground(mListBackground);
+    @Override
+    public void setDrawerListener(DrawerListener listener) {
+        mUserDrawerListener = listener;
+    }
+
+    private final DrawerListener mDrawerListener = new DrawerListener() {
+        @Override
+        public void onDrawerSlide(View drawerView, float slideOffset) {
+            // An edge peek only slides the drawer, without a drag or an open request
+            createDeferredList();
+            // The menu is being seen, the rows that aren't ready are created with it
+            revealPopulatedList();
+            if(mOpenRequestTime >= 0 && mFirstOpenLatency < 0) {
+                mFirstOpenLatency = SystemClock.uptimeMillis() - mOpenRequestTime;
+                mMetrics.onFirstOpen(mFirstOpenLatency);
+            }
+            if(mUserDrawerListener != null) {
+                mUserDrawerListener.onDrawerSlide(drawerView, slideOffset);
+            }
+        }
+
+        @Override
+        public void onDrawerOpened(View drawerView) {
+            if(mUserDrawerListener != null) {
+                mUserDrawerListener.onDrawerOpened(drawerView);
+            }
+        }
+
+        @Override
+        public void onDrawerClosed(View drawerView) {
+            if(mUserDrawerListener != null) {
+                mUserDrawerListener.onDrawerClosed(drawerView);
+            }
+        }
+
+        @Override
+        public void onDrawerStateChanged(int newState) {
+            if(newState == STATE_DRAGGING && getDrawerView() != null && !isDrawerMenuOpen()) {
+                onOpenRequested();
+            }
+            monitorFrames(DrawerMetrics.FRAMES_DRAWER_SLIDE, newState != STATE_IDLE);
+            if(mOptimizedSlide) {
+                setSlideLayer(newState != STATE_IDLE);
+            }
+            if(mUserDrawerListener != null) {
+                mUserDrawerListener.onDrawerStateChanged(newState);
+            }
+        }
+    };
+
+    private void onOpenRequested() {
+        if(mOpenRequestTime < 0) {
+            mOpenRequestTime = SystemClock.uptimeMillis();
         }
+        // The menu is about to be seen, it can't wait for an idle moment anymore
+        resolveDeferredAttributes();
+        createDeferredList();
     }
 
     /**
-     * Set list background to the resource with this id
-     * @param backgroundId Id of the background
+     * Defer the creation of the ListView, leaving only an empty container as the drawer until
+     * it's needed. The calls that need the ListView, like setListViewSections, check or
+     * setMenuHeader, are kept and replayed in the same order when it's created.
+     * Must be called before setting the sections, it does nothing once the ListView exists.
+     * @param mode DEFER_LIST_NONE, DEFER_LIST_UNTIL_IDLE or DEFER_LIST_UNTIL_OPEN
      */
-    @TargetApi(16)
-    public void setListBackground(int backgroundId) {
-        Drawable d = getResources().getDrawable(backgroundId);
-        setBackground(d);
+    public void setListCreationDeferral(int mode) {
+        if(mListView != null || isInEditMode()) {
+            return;
+        }
+        mListDeferral = mode;
+        if(mode == DEFER_LIST_NONE) {
+            createDeferredList();
+            return;
+        }
+        if(mPendingListCalls == null) {
+            mPendingListCalls = new ArrayList<Runnable>();
+        }
+        if(getWindowToken() != null) {
+            scheduleListCreation();
+        }
+    }
+
+    public int getListCreationDeferral() {
+        return mListDeferral;
     }
 
     /**
-     * Set list backround to the provided color
-     * @param color
+     * Keeps a call that needs the ListView if its creation is deferred
+     * @param call The call, run when the ListView is created
+     * @return true if the call was kept, false if the caller must go on
      */
-    public void setListBackgroundColor(int color) {
-        mListView.setBackgroundColor(color);
+    private boolean deferListCall(Runnable call) {
+        if(mPendingListCalls == null) {
+            return false;
+        }
+        if(mListContainer == null) {
+            attachListContainer();
+        }
+        mPendingListCalls.add(call);
+        return true;
+    }
+
+    private void attachListContainer() {
+        int width = mListWidth >= 0 ? (int) mListWidth : getResources().getDimensionPixelSize(R.dimen.navigation_list_width);
+        mListContainer = new LinearLayout(getContext());
+        mListContainer.setOrientation(LinearLayout.VERTICAL);
+        mListContainer.setLayoutParams(new DrawerLayout.LayoutParams(width, LayoutParams.MATCH_PARENT, mDrawerGravity));
+        if(!mWaitingForInflation) {
+            addView(mListContainer);
+        }
     }
 
     /**
-     * Change list width
-     * @param width
+     * @return The child of the DrawerLayout that slides: the ListView or its container
      */
-    public void setWidth(int width) {
-        mListWidth = width;
-        ((LayoutParams) mListView.getLayoutParams()).width = width;
-        mListView.requestLayout();
+    private View getDrawerView() {
+        if(mListContainer == null && mListView == null && mPendingListCalls != null) {
+            attachListContainer();
+        }
+        return mListContainer != null ? mListContainer : mListView;
+    }
+
+    private void scheduleListCreation() {
+        if(mPendingListCalls == null || mListDeferral != DEFER_LIST_UNTIL_IDLE || mListCreationScheduled) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(mListCreator);
+        mListCreationScheduled = true;
     }
 
+    private final MessageQueue.IdleHandler mListCreator = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mListCreationScheduled = false;
+            createDeferredList();
+            return false;
+        }
+    };
+
     /**
-     * Set the main list divider drawable to the provided one
-     * @param listDivider
+     * Creates the ListView if its creation was deferred and replays the calls made meanwhile.
+     * It's called automatically on the first open, drag or peek of the drawer and, with
+     * DEFER_LIST_UNTIL_IDLE, on the first idle moment. Does nothing if the ListView exists.
      */
-    public void setMainListDivider(Drawable listDivider) {
-        this.mListMainDividerDrawable = listDivider;
-        mListView.setDivider(listDivider);
+    @TargetApi(18)
+    public void createDeferredList() {
+        ArrayList<Runnable> calls = mPendingListCalls;
+        if(calls == null) {
+            return;
+        }
+        mPendingListCalls = null;
+        if(mListCreationScheduled) {
+            Looper.myQueue().removeIdleHandler(mListCreator);
+            mListCreationScheduled = false;
+        }
+        // The list is built once, with the final drawables, icons, header and footer
+        resolveDeferredAttributes();
+
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(TRACE_CREATE_LIST);
+        }
+        long start = System.nanoTime();
+        try {
+            if(mListView == null) {
+                if(mListContainer == null) {
+                    attachListContainer();
+                }
+                configureList();
+            }
+            for(Runnable call : calls) {
+                call.run();
+            }
+        } finally {
+            mListCreationTimeNanos = System.nanoTime() - start;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                Trace.endSection();
+            }
+        }
     }
 
-    public void setMainListDividerHeight(int height) {
-        this.mListMainDividerHeight = height;
-        mListView.setDividerHeight(height);
+    /**
+     * @return false while the ListView creation is deferred
+     */
+    public boolean isListCreated() {
+        return mPendingListCalls == null && mListView != null;
     }
 
     /**
-     * Set the main list divider drawable to the provided one
-     * @param listDivider
+     * Time spent creating a deferred ListView and replaying the calls made before. This is the
+     * time moved out of the inflation of the drawer.
+     * @return The time in nanoseconds, or 0 if the creation wasn't deferred or hasn't happened yet
      */
-    public void setSecondaryListDivider(Drawable listDivider) {
-        this.mListSecondaryDividerDrawable = listDivider;
+    public long getListCreationTimeNanos() {
+        return mListCreationTimeNanos;
     }
 
-    public void setSecondaryListDividerHeight(int height) {
-        this.mListSecondaryDividerHeight = height;
+    private void scheduleDeferredResolution() {
+        if(mDeferredAttributes == null || mDeferredResolutionScheduled) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(mDeferredResolver);
+        mDeferredResolutionScheduled = true;
     }
-	/**
-	 * Set the behavior of the secondary sections
-	 * @param isSecondarySectionsClickable
-	 */
-    public void setIsSecondarySectionsClickable(boolean isSecondarySectionsClickable) {
-        this.mSecondarySectionsClickable = isSecondarySectionsClickable;
-	}
+
+    private final MessageQueue.IdleHandler mDeferredResolver = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mDeferredResolutionScheduled = false;
+            resolveDeferredAttributes();
+            return false;
+        }
+    };
 
     /**
-     * Configure View with custom attrs
-     * @param typedArray - A TypedArray
+     * With list_lazyConfiguration, loads the drawables, section icons and header and footer
+     * layouts that were skipped while inflating the drawer. It's called automatically on the
+     * first idle moment or when the menu is opened, whatever comes first. Does nothing if there's
+     * nothing left to load.
      */
-    public void configureWithTypedArray(TypedArray typedArray) {
-        mListBackground = typedArray.getDrawable(R.styleable.GoogleNavigationDrawer_list_background);
+    @TargetApi(18)
+    public void resolveDeferredAttributes() {
+        DeferredAttributes deferred = mDeferredAttributes;
+        if(deferred == null || isInEditMode()) {
+            return;
+        }
+        mDeferredAttributes = null;
+        if(mDeferredResolutionScheduled) {
+            Looper.myQueue().removeIdleHandler(mDeferredResolver);
+            mDeferredResolutionScheduled = false;
+        }
 
-        mListWidth = typedArray.getDimension(R.styleable.GoogleNavigationDrawer_list_width, -1);
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(TRACE_DEFERRED_CONFIGURE);
+        }
+        long start = System.nanoTime();
+        try {
+            Resources res = getResources();
+
+            if(deferred.listBackgroundId != -1) {
+                mListBackground = res.getDrawable(deferred.listBackgroundId);
+                if(mListView != null) {
+                    setListBackground(mListBackground);
+                }
+            }
 
-        mListMainDividerHeight = (int) typedArray.getDimension(R.styleable.GoogleNavigationDrawer_list_main_divider_height, -1);
-        mListSecondaryDividerHeight = (int) typedArray.getDimension(R.styleable.GoogleNavigationDrawer_list_secondary_divider_height, -1);
+            boolean restyleRows = false;
+            if(deferred.mainDividerId != -1) {
+                mListMainDividerDrawable = res.getDrawable(deferred.mainDividerId);
+                restyleRows = true;
+            }
+            if(deferred.secondaryDividerId != -1) {
+                mListSecondaryDividerDrawable = res.getDrawable(deferred.secondaryDividerId);
+                restyleRows = true;
+            }
+
+            boolean iconsChanged = false;
+            if(deferred.mainDrawablesId != -1 && mMainSections != null) {
+                mMainSectionsDrawableIds = readDrawableIds(deferred.mainDrawablesId, mMainSections.length);
+                iconsChanged = true;
+            }
+            if(deferred.secondaryDrawablesId != -1 && mSecondarySections != null) {
+                mSecondarySectionsDrawableIds = readDrawableIds(deferred.secondaryDrawablesId, mSecondarySections.length);
+                iconsChanged = true;
+            }
+            if(deferred.preloadIcons) {
+                getDrawableCache().preload(mMainSectionsDrawableIds);
+                getDrawableCache().preload(mSecondarySectionsDrawableIds);
+            }
 
-        mListMainDividerDrawable = typedArray.getDrawable(R.styleable.GoogleNavigationDrawer_list_main_divider);
-        mListSecondaryDividerDrawable = typedArray.getDrawable(R.styleable.GoogleNavigationDrawer_list_secondary_divider);
+            // Only touch the adapter if it still shows the sections from the attributes
+            if(mAdapter != null && deferred.sectionsGeneration == mSectionsUpdateGeneration) {
+                if(iconsChanged) {
+                    mAdapter.setSectionModel(new SectionModel.Builder(mAdapter.getSectionModel())
+                            .setMainIcons(mMainSectionsDrawableIds)
+                            .setSecondaryIcons(mSecondarySectionsDrawableIds)
+                            .build());
+                }
+                if(restyleRows) {
+                    if(mListMainDividerDrawable != null) {
+                        mAdapter.setMainDividerDrawable(mListMainDividerDrawable);
+                    }
+                    if(mListSecondaryDividerDrawable != null) {
+                        mAdapter.setSecondaryDividerDrawable(mListSecondaryDividerDrawable);
+                    }
+                }
+                if(restyleRows || iconsChanged) {
+                    // Rows created so far, shown or pooled, get the new dividers as they're bound again
+                    mAdapter.notifyDataSetChanged();
+                }
+            }
 
-        if(mListMainDividerDrawable == null) {
-            mListMainDivider = typedArray.getColor(R.styleable.GoogleNavigationDrawer_list_main_divider, -1);
+            // The slots were attached empty, so the views are added in place
+            LayoutInflater inflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+            if(deferred.headerLayoutId != -1 && mHeaderView == null) {
+                View header = inflater.inflate(deferred.headerLayoutId, null);
+                if(mListView != null) {
+                    setMenuHeader(header, mHeaderClickable);
+                } else {
+                    mHeaderView = header;
+                }
+            }
+            if(deferred.footerLayoutId != -1 && mFooterView == null) {
+                View footer = inflater.inflate(deferred.footerLayoutId, null);
+                if(mListView != null) {
+                    setMenuFooter(footer, mFooterClickable);
+                } else {
+                    mFooterView = footer;
+                }
+            }
+        } finally {
+            mDeferredConfigurationTimeNanos = System.nanoTime() - start;
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                Trace.endSection();
+            }
         }
+        schedulePreInflation();
+    }
 
-        if(mListSecondaryDividerDrawable == null) {
-            mListSecondaryDivider = typedArray.getColor(R.styleable.GoogleNavigationDrawer_list_secondary_divider, -1);
+    /**
+     * @return true if list_lazyConfiguration was set and the deferred attributes haven't been loaded yet
+     */
+    public boolean hasDeferredAttributes() {
+        return mDeferredAttributes != null;
+    }
+
+    /**
+     * Time spent in configureWithTypedArray, while the drawer was being inflated.
+     * @return The time in nanoseconds
+     */
+    public long getConfigurationTimeNanos() {
+        return mConfigurationTimeNanos;
+    }
+
+    /**
+     * Time spent loading the attributes deferred by list_lazyConfiguration. This is the time
+     * moved out of the inflation of the drawer.
+     * @return The time in nanoseconds, or 0 if nothing was deferred or it hasn't been loaded yet
+     */
+    public long getDeferredConfigurationTimeNanos() {
+        return mDeferredConfigurationTimeNanos;
+    }
+
+    /**
+     * Releases cached icons when the system is low on memory. Called automatically from
+     * Ice Cream Sandwich on, call it from your Application or Activity on older versions.
+     * @param level The level received in onTrimMemory
+     */
+    public void onTrimMemory(int level) {
+        if(mDrawableCache != null) {
+            mDrawableCache.onTrimMemory(level);
         }
+        if(mIconLoader != null) {
+            mIconLoader.onTrimMemory(level);
+        }
+    }
 
-        mListPaddingTop = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingTop, mListPaddingTop);
-        mListPaddingBottom = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingBottom, mListPaddingBottom);
-        mListPaddingRight = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingRight, mListPaddingRight);
-        mListPaddingLeft = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingLeft, mListPaddingLeft);
+    /**
+     * Returns the cache of section icons used by this drawer, with its hit, miss and size stats.
+     * @return The DrawableCache
+     */
+    public DrawableCache getDrawableCache() {
+        if(mDrawableCache == null) {
+            if(mUseSharedModel) {
+                mDrawableCache = DrawerModelRegistry.getInstance(getContext()).getDrawableCache(mIconCacheSize);
+            } else {
+                mDrawableCache = new DrawableCache(getResources(), mIconCacheSize);
+            }
+        }
+        return mDrawableCache;
+    }
 
-        mDrawerGravity = typedArray.getInt(R.styleable.GoogleNavigationDrawer_drawer_gravity, mDrawerGravity);
+    /**
+     * Change the memory budget of the section icons cache. Least recently used icons are
+     * released when it's exceeded.
+     * @param maxSizeBytes The budget, in bytes
+     */
+    public void setIconCacheSize(int maxSizeBytes) {
+        mIconCacheSize = maxSizeBytes;
+        if(mDrawableCache != null) {
+            mDrawableCache = new DrawableCache(getResources(), maxSizeBytes);
+            if(mAdapter != null) {
+                mAdapter.setDrawableCache(mDrawableCache);
+            }
+        }
+    }
 
-        mMainSections = Utils.convertToStringArray(typedArray.getTextArray(R.styleable.GoogleNavigationDrawer_list_mainSectionsEntries));
-        mSecondarySections = Utils.convertToStringArray(typedArray.getTextArray(R.styleable.GoogleNavigationDrawer_list_secondarySectionsEntries));
+    /**
+     * Returns the loader used for icons set from files, Uris or custom IconSource loaders.
+     * Bitmaps are decoded off the UI thread and sampled down to the icon size.
+     * @return The IconLoader
+     */
+    public IconLoader getIconLoader() {
+        if(mIconLoader == null) {
+            mIconLoader = new IconLoader(getContext());
+        }
+        return mIconLoader;
+    }
 
-        mListPrimarySectionsBackgroundId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_mainSectionsBackground, -1);
-        mListSecondarySectionsBackgroundId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_secondarySectionsBackground, -1);
+    /**
+     * Set the icons of the sections from any IconSource: resources, files, Uris or your own
+     * loader. They take precedence over the drawable ids given in setListViewSections.
+     * Icons that aren't resources are loaded in the background, showing the placeholder meanwhile.
+     * @param mainIconSources The main sections icons, in the same order as the main sections. May be null.
+     * @param secondaryIconSources The secondary sections icons, in the same order as the secondary sections. May be null.
+     */
+    public void setSectionIconSources(IconSource[] mainIconSources, IconSource[] secondaryIconSources) {
+        mMainSectionsIconSources = mainIconSources;
+        mSecondarySectionsIconSources = secondaryIconSources;
+        if(mAdapter != null) {
+            mAdapter.setIconLoader(getIconLoader());
+            mAdapter.setMainSectionsIconSources(mainIconSources);
+            mAdapter.setSecondarySectionsIconSources(secondaryIconSources);
+            mAdapter.notifyDataSetChanged();
+        }
+    }
 
-        int mainSectDrawableId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_mainSectionsDrawables, -1);
+    /**
+     * Set the provider of the children of the expandable groups added with
+     * SectionModel.Builder.addGroup. Children are only asked for when a group is expanded.
+     * @param childProvider The provider. May be null.
+     * @param loadInBackground True to call the provider from a background thread
+     */
+    public void setSectionChildProvider(ChildProvider childProvider, boolean loadInBackground) {
+        mChildProvider = childProvider;
+        mLoadChildrenInBackground = loadInBackground;
+        if(mAdapter != null) {
+            mAdapter.setChildProvider(childProvider);
+            mAdapter.setLoadChildrenInBackground(loadInBackground);
+        }
+    }
 
-        if(!isInEditMode()) {
+    /**
+     * Set the drawable shown while an icon from an IconSource is loading or if it failed to load.
+     * @param placeholderResId The drawable resource id or -1 for none
+     */
+    public void setIconPlaceholder(int placeholderResId) {
+        mIconPlaceholderResId = placeholderResId;
+        if(mAdapter != null) {
+            mAdapter.setIconPlaceholderResId(placeholderResId);
+        }
+    }
 
-            if (mMainSections != null) {
-                mMainSectionsDrawableIds = new int[mMainSections.length];
+    /**
+     * Time between the first open request (openDrawerMenu or the user dragging the drawer) and
+     * the first frame where the drawer moved.
+     * @return The latency in milliseconds or -1 if the drawer hasn't been opened yet
+     */
+    public long getFirstOpenLatencyMillis() {
+        return mFirstOpenLatency;
+    }
+
+    /**
+     * Make the drawer cheaper to draw while it slides, for devices with slow GPUs:
+     * <ul>
+     *     <li>While the drawer moves it's drawn once into a hardware layer, which is then just
+     *     moved every frame instead of drawing the whole menu again.</li>
+     *     <li>If the menu has a container, i.e. for the filter bar, the list background is drawn
+     *     by the container instead. An opaque drawer lets DrawerLayout skip drawing the content
+     *     behind it.</li>
+     *     <li>Main section rows don't get the default background, which is transparent whether
+     *     they're checked or not. It's applied to sections set after this call.</li>
+     * </ul>
+     * @param optimized True to enable it
+     */
+    public void setOptimizedSlide(boolean optimized) {
+        if(mOptimizedSlide == optimized) {
+            return;
+        }
+        mOptimizedSlide = optimized;
+        if(!optimized) {
+            setSlideLayer(false);
+        }
+        updateDrawerBackground();
+    }
+
+    public boolean isOptimizedSlide() {
+        return mOptimizedSlide;
+    }
+
+    /**
+     * Share the sections read from the attributes and the icon cache with the other drawers of
+     * the app, so activities with the same menu don't read the arrays and decode the icons again.
+     * See DrawerModelRegistry. Only applies to the attributes read after this call, set
+     * drawer:list_sharedModel in the layout instead. setIconCacheSize gives the drawer its own
+     * icon cache again.
+     * @param useSharedModel True to share them
+     */
+    public void setUseSharedModel(boolean useSharedModel) {
+        mUseSharedModel = useSharedModel;
+    }
+
+    public boolean isUsingSharedModel() {
+        return mUseSharedModel;
+    }
+
+    /**
+     * Create and bind the first screen of rows when an open looks likely, a few each frame, so
+     * the open animation doesn't have to. It starts when the user touches the edge the drawer is
+     * dragged from, before the drag or the peek, and the rows are kept in the adapter until the
+     * list asks for them. The list is shown when they're ready or as soon as the drawer starts
+     * to slide, creating the rows that weren't ready as usual.
+     *
+     * It only has work to do if the list hasn't shown any row yet, i.e. with
+     * DEFER_LIST_UNTIL_OPEN: a list that exists is laid out while the drawer is closed.
+     * DrawerMetrics.onPrefetchHit and onPrefetchWasted tell how many rows were used.
+     * @param prefetch True to prefetch them
+     */
+    public void setPrefetchOnSlide(boolean prefetch) {
+        mPrefetchOnSlide = prefetch;
+        if(!prefetch && !mChunkedFirstRender) {
+            revealPopulatedList();
+        }
+    }
+
+    public boolean isPrefetchingOnSlide() {
+        return mPrefetchOnSlide;
+    }
+
+    /**
+     * Create and bind the rows of the first screen over several frames, within the frame budget,
+     * every time the sections are set, instead of all of them in the frame after. The list is
+     * hidden meanwhile, leaving its background as the placeholder, and shown once they're ready
+     * or as soon as the drawer slides. Worth it on tall screens, where dozens of rows fit.
+     *
+     * The list is moved into a container, like with the filter bar, so it can be hidden. Set from
+     * XML, the container is only added to the drawer in onFinishInflate, after the content.
+     * DrawerMetrics.onPopulated reports the longest frame of every population, with or without it.
+     * @param chunked True to bind them in chunks
+     */
+    public void setChunkedFirstRender(boolean chunked) {
+        mChunkedFirstRender = chunked;
+        if(chunked) {
+            if(!isInEditMode()) {
+                // Before onFinishInflate it's only created, the content isn't a child yet
+                ensureListContainer();
+            }
+        } else if(!mPrefetchOnSlide) {
+            revealPopulatedList();
+        }
+    }
+
+    public boolean isChunkedFirstRender() {
+        return mChunkedFirstRender;
+    }
+
+    /**
+     * Set the time the prefetch and the chunked first render can spend creating and binding rows
+     * in each frame. The rest of the frame is left to drawing it and to the app.
+     * @param millis The budget in milliseconds, 4 by default
+     */
+    public void setChunkFrameBudget(float millis) {
+        mChunkFrameBudgetNanos = (long) (millis * 1000000);
+    }
+
+    public float getChunkFrameBudget() {
+        return mChunkFrameBudgetNanos / 1000000f;
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        if(mPrefetchOnSlide && ev.getActionMasked() == MotionEvent.ACTION_DOWN && isOnDrawerEdge(ev.getX())) {
+            prefetchRows();
+        }
+        return super.onInterceptTouchEvent(ev);
+    }
+
+    private boolean isOnDrawerEdge(float x) {
+        float edge = PREFETCH_EDGE_SIZE_DP * getResources().getDisplayMetrics().density;
+        int gravity = GravityCompat.getAbsoluteGravity(mDrawerGravity, ViewCompat.getLayoutDirection(this));
+        if((gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.RIGHT) {
+            return x >= getWidth() - edge;
+        }
+        return x <= edge;
+    }
+
+    /**
+     * Starts creating and binding the rows of the first screen of the menu, within the frame
+     * budget, if the list hasn't shown any row yet. A deferred list is created first.
+     * It's called automatically with setPrefetchOnSlide when the user touches the drawer edge.
+     */
+    public void prefetchRows() {
+        if(mChunkedPopulationScheduled || isInEditMode() || isDrawerMenuOpen()) {
+            return;
+        }
+        createDeferredList();
+        if(mListView != null && mListView.getChildCount() == 0) {
+            populateInChunks();
+        }
+    }
+
+    /**
+     * Hides the list and prepares its first screen of rows in chunks, one per frame. Only done
+     * before the list has shown any row and while the drawer can't be seen, so it never blanks
+     * a menu the user is looking at.
+     * @return true if the rows are being prepared
+     */
+    private boolean populateInChunks() {
+        // Without a container the list is the drawer itself, it can't be hidden meanwhile
+        if(mAdapter == null || mListContainer == null || mListRowsShown || isDrawerVisible(mListContainer)) {
+            return false;
+        }
+        mPopulationTarget = getFirstScreenRowCount();
+        mPopulationPosition = 0;
+        if(mPopulationTarget == 0) {
+            return false;
+        }
+        // Hidden, the list isn't laid out before the rows are ready
+        mListView.setVisibility(View.GONE);
+        mListHiddenForPopulation = true;
+        if(!mChunkedPopulationScheduled) {
+            mChunkedPopulationScheduled = true;
+            ViewCompat.postOnAnimation(this, mChunkedPopulator);
+        }
+        return true;
+    }
+
+    /**
+     * Rows that fit in the height of the drawer, from the first one. The header isn't taken
+     * into account, so it may be a few more than the list shows.
+     */
+    private int getFirstScreenRowCount() {
+        Resources res = getResources();
+        int mainHeight = res.getDimensionPixelSize(R.dimen.main_section_item_height);
+        int secondaryHeight = res.getDimensionPixelSize(R.dimen.secondary_section_item_height);
+        int available = getHeight() > 0 ? getHeight() : res.getDisplayMetrics().heightPixels;
+        available -= mListView.getPaddingTop() + mListView.getPaddingBottom();
+        int count = 0;
+        for(int i = 0; i < mAdapter.getCount() && available > 0; i++) {
+            available -= mAdapter.getItemViewType(i) == GoogleNavigationDrawerAdapter.TYPE_MAIN ? mainHeight : secondaryHeight;
+            count++;
+        }
+        return count;
+    }
+
+    private final Runnable mChunkedPopulator = new Runnable() {
+        @Override
+        public void run() {
+            mChunkedPopulationScheduled = false;
+            if(!mListHiddenForPopulation || mAdapter == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            int target = Math.min(mPopulationTarget, mAdapter.getCount());
+            while(mPopulationPosition < target && System.nanoTime() - start < mChunkFrameBudgetNanos) {
+                mAdapter.prefetchRow(mPopulationPosition++, mListView);
+            }
+            onPopulationFrame(System.nanoTime() - start);
+            if(mPopulationPosition < target) {
+                mChunkedPopulationScheduled = true;
+                ViewCompat.postOnAnimation(GoogleNavigationDrawer.this, this);
+            } else {
+                revealPopulatedList();
+            }
+        }
+    };
+
+    /**
+     * Stops the chunked population and shows the list, which takes the prepared rows on its
+     * next layout
+     */
+    private void revealPopulatedList() {
+        if(mChunkedPopulationScheduled) {
+            removeCallbacks(mChunkedPopulator);
+            mChunkedPopulationScheduled = false;
+        }
+        if(mListHiddenForPopulation) {
+            mListHiddenForPopulation = false;
+            mListView.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /**
+     * Starts measuring the population of the list with new sections, until it lays out its rows
+     */
+    private void startPopulation() {
+        mPopulating = true;
+        mPopulationStartNanos = System.nanoTime();
+        mPopulationFrames = 0;
+        mPopulationLongestFrameNanos = 0;
+    }
+
+    private void onPopulationFrame(long nanos) {
+        mPopulationFrames++;
+        mPopulationLongestFrameNanos = Math.max(mPopulationLongestFrameNanos, nanos);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        boolean populating = mPopulating && !mListHiddenForPopulation && mListView != null;
+        long start = populating ? System.nanoTime() : 0;
+        super.onLayout(changed, l, t, r, b);
+        if(mListView != null && mListView.getChildCount() > 0) {
+            mListRowsShown = true;
+        }
+        if(populating && (mListView.getChildCount() > 0 || mAdapter == null || mAdapter.getCount() == 0)) {
+            // The frame that lays out the rows is the last one of the population
+            mPopulating = false;
+            onPopulationFrame(System.nanoTime() - start);
+            mLastPopulationLongestFrameNanos = mPopulationLongestFrameNanos;
+            mMetrics.onPopulated(mPopulationFrames, mPopulationLongestFrameNanos, System.nanoTime() - mPopulationStartNanos);
+        }
+        if(!mListHiddenForPopulation && mAdapter != null && mAdapter.getPrefetchedRowCount() > 0 && mListView.getChildCount() > 0) {
+            // The list took the rows it needed, it won't ask for the rest
+            mAdapter.releasePrefetchedRows();
+        }
+    }
+
+    /**
+     * Time the population of the list with the last sections set spent in its longest frame:
+     * creating and binding a chunk of rows or laying out the list. Without the chunked first
+     * render it's the layout that creates all the rows of the first screen.
+     * @return The time in nanoseconds, or 0 if the list hasn't been populated yet
+     */
+    public long getLongestPopulationFrameNanos() {
+        return mLastPopulationLongestFrameNanos;
+    }
+
+    @TargetApi(11)
+    private void setSlideLayer(boolean sliding) {
+        View drawerView = mListContainer != null ? mListContainer : mListView;
+        if(drawerView == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        // A software layer would be drawn again on every invalidation, it's no better than no layer
+        int layerType = sliding && drawerView.isHardwareAccelerated() ? ViewCompat.LAYER_TYPE_HARDWARE : ViewCompat.LAYER_TYPE_NONE;
+        if(ViewCompat.getLayerType(drawerView) != layerType) {
+            ViewCompat.setLayerType(drawerView, layerType, null);
+        }
+    }
+
+    /**
+     * Moves the list background to its container with the optimized slide, and back without it
+     */
+    private void updateDrawerBackground() {
+        if(mListView == null || mListContainer == null) {
+            return;
+        }
+        View from = mOptimizedSlide ? mListView : mListContainer;
+        View to = mOptimizedSlide ? mListContainer : mListView;
+        Drawable background = from.getBackground();
+        if(background != null) {
+            setViewBackground(from, null);
+            setViewBackground(to, background);
+        }
+    }
+
+    /**
+     * Report the performance of the drawer: the first open latency, the inflation and bind time
+     * of the rows, the cost of check and, from Jelly Bean on, the slow and dropped frames while
+     * the drawer slides or the menu is flung. Nothing is measured with DrawerMetrics.NONE, the
+     * default.
+     * @param metrics Where the metrics are reported, i.e. an InMemoryDrawerMetrics. May be null.
+     */
+    public void setMetrics(DrawerMetrics metrics) {
+        // Frames counted so far go to the previous metrics
+        monitorFrames(DrawerMetrics.FRAMES_DRAWER_SLIDE, false);
+        monitorFrames(DrawerMetrics.FRAMES_LIST_FLING, false);
+        mMetrics = metrics == null ? DrawerMetrics.NONE : metrics;
+        if(mAdapter != null) {
+            mAdapter.setMetrics(mMetrics);
+        }
+    }
+
+    public DrawerMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    private final AbsListView.OnScrollListener mFlingObserver = new AbsListView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            monitorFrames(DrawerMetrics.FRAMES_LIST_FLING, scrollState == SCROLL_STATE_FLING);
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        }
+    };
+
+    /**
+     * Starts or stops counting the frames of the drawer sliding or the menu being flung
+     */
+    @TargetApi(16)
+    private void monitorFrames(int source, boolean running) {
+        if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return;
+        }
+        FrameMonitor monitor = source == DrawerMetrics.FRAMES_DRAWER_SLIDE ? mSlideFrameMonitor : mFlingFrameMonitor;
+        if(!running) {
+            if(monitor != null) {
+                monitor.stop();
+            }
+            return;
+        }
+        if(mMetrics == DrawerMetrics.NONE) {
+            return;
+        }
+        if(monitor == null) {
+            float refreshRate = ((WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay().getRefreshRate();
+            monitor = new FrameMonitor(source, (long) (1000000000L / (refreshRate > 0 ? refreshRate : 60)));
+            if(source == DrawerMetrics.FRAMES_DRAWER_SLIDE) {
+                mSlideFrameMonitor = monitor;
+            } else {
+                mFlingFrameMonitor = monitor;
+            }
+        }
+        monitor.start(mMetrics);
+    }
+
+    /**
+     * Create some rows during idle time, so opening the drawer or scrolling it for the first time
+     * doesn't need to inflate them. Rows are kept in the RecycledRowPool until the list needs them.
+     * @param mainRows Number of main section rows to create
+     * @param secondaryRows Number of secondary section rows to create
+     */
+    public void setRowPreInflation(int mainRows, int secondaryRows) {
+        mPreInflatedMainRows = mainRows;
+        mPreInflatedSecondaryRows = secondaryRows;
+        if(mainRows > mRowPool.getMaxRecycledRows(GoogleNavigationDrawerAdapter.TYPE_MAIN)) {
+            mRowPool.setMaxRecycledRows(GoogleNavigationDrawerAdapter.TYPE_MAIN, mainRows);
+        }
+        if(secondaryRows > mRowPool.getMaxRecycledRows(GoogleNavigationDrawerAdapter.TYPE_SECONDARY)) {
+            mRowPool.setMaxRecycledRows(GoogleNavigationDrawerAdapter.TYPE_SECONDARY, secondaryRows);
+        }
+        schedulePreInflation();
+    }
+
+    /**
+     * Returns the pool of rows shared by the lists and adapters of this drawer. Its size, hit and
+     * miss counts show how many rows didn't have to be inflated.
+     * @return The RecycledRowPool
+     */
+    public RecycledRowPool getRecycledRowPool() {
+        return mRowPool;
+    }
+
+    private void schedulePreInflation() {
+        if(mPreInflationScheduled || mAdapter == null || getNextPreInflatedRowType() == -1) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(mPreInflater);
+        mPreInflationScheduled = true;
+    }
+
+    private int getNextPreInflatedRowType() {
+        if(mRowPool.getRecycledRowCount(GoogleNavigationDrawerAdapter.TYPE_MAIN) < mPreInflatedMainRows) {
+            return GoogleNavigationDrawerAdapter.TYPE_MAIN;
+        }
+        if(mRowPool.getRecycledRowCount(GoogleNavigationDrawerAdapter.TYPE_SECONDARY) < mPreInflatedSecondaryRows) {
+            return GoogleNavigationDrawerAdapter.TYPE_SECONDARY;
+        }
+        return -1;
+    }
+
+    /**
+     * Inflates one row each time the UI thread is idle, until the pool has the requested rows
+     */
+    private final MessageQueue.IdleHandler mPreInflater = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            int type = getNextPreInflatedRowType();
+            if(type == -1 || mAdapter == null) {
+                mPreInflationScheduled = false;
+                return false;
+            }
+            mRowPool.putRecycledRow(type, mAdapter.createRow(type));
+            mPreInflationScheduled = getNextPreInflatedRowType() != -1;
+            return mPreInflationScheduled;
+        }
+    };
+
+    /**
+     * Add the feature to set the titles automatically to the section's names
+     * @param activity The activity whose title will change or not
+     * @param shouldChangeTitle True if it should change
+     */
+    public void setShouldChangeTitle(Activity activity, boolean shouldChangeTitle) {
+        if (shouldChangeTitle)
+            mActivity = activity;
+        else
+            mActivity = null;
+        mShouldChangeTitle = shouldChangeTitle;
+    }
+
+    /**
+     * Change list background to the drawable.
+     * @param d Drawable to set as background
+     */
+    @TargetApi(16)
+    public void setListBackground(final Drawable d) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setListBackground(d);
+            }
+        })) {
+            return;
+        }
+        mListBackground = d;
+        setViewBackground(mListView, mListBackground);
+        updateDrawerBackground();
+    }
+
+    @TargetApi(16)
+    private static void setViewBackground(View view, Drawable d) {
+        int sdk = android.os.Build.VERSION.SDK_INT;
+        if(sdk < android.os.Build.VERSION_CODES.JELLY_BEAN) {
+            view.setBackgroundDrawable(d);
+        } else {
+            view.setBackground(d);
+        }
+    }
+
+    /**
+     * Set list background to the resource with this id
+     * @param backgroundId Id of the background
+     */
+    @TargetApi(16)
+    public void setListBackground(int backgroundId) {
+        Drawable d = getResources().getDrawable(backgroundId);
+        setBackground(d);
+    }
+
+    /**
+     * Set list backround to the provided color
+     * @param color
+     */
+    public void setListBackgroundColor(final int color) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setListBackgroundColor(color);
+            }
+        })) {
+            return;
+        }
+        mListView.setBackgroundColor(color);
+        updateDrawerBackground();
+    }
+
+    /**
+     * Change list width
+     * @param width
+     */
+    public void setWidth(int width) {
+        mListWidth = width;
+        View drawerView = getDrawerView();
+        drawerView.getLayoutParams().width = width;
+        drawerView.requestLayout();
+    }
+
+    /**
+     * Set the main list divider drawable to the provided one
+     * @param listDivider
+     */
+    public void setMainListDivider(final Drawable listDivider) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setMainListDivider(listDivider);
+            }
+        })) {
+            return;
+        }
+        this.mListMainDividerDrawable = listDivider;
+        mListView.setDivider(listDivider);
+    }
+
+    public void setMainListDividerHeight(final int height) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setMainListDividerHeight(height);
+            }
+        })) {
+            return;
+        }
+        this.mListMainDividerHeight = height;
+        mListView.setDividerHeight(height);
+    }
+
+    /**
+     * Set the main list divider drawable to the provided one
+     * @param listDivider
+     */
+    public void setSecondaryListDivider(Drawable listDivider) {
+        this.mListSecondaryDividerDrawable = listDivider;
+    }
+
+    public void setSecondaryListDividerHeight(int height) {
+        this.mListSecondaryDividerHeight = height;
+    }
+	/**
+	 * Set the behavior of the secondary sections
+	 * @param isSecondarySectionsClickable
+	 */
+    public void setIsSecondarySectionsClickable(boolean isSecondarySectionsClickable) {
+        this.mSecondarySectionsClickable = isSecondarySectionsClickable;
+	}
+
+    /**
+     * Use a single custom drawn View per section row instead of inflating the row layouts.
+     * Rows look the same and are cheaper to create, measure and draw.
+     * @param useFlatRows True to use flat rows
+     */
+    public void setUseFlatRows(boolean useFlatRows) {
+        if(mUseFlatRows == useFlatRows) {
+            return;
+        }
+        mUseFlatRows = useFlatRows;
+        mRowPool.clear();
+        if(mAdapter != null) {
+            mAdapter.setUseFlatRows(useFlatRows);
+            mAdapter.notifyDataSetChanged();
+        }
+    }
+
+    public boolean isUsingFlatRows() {
+        return mUseFlatRows;
+    }
+
+    /**
+     * Measure the labels of flat rows in a background thread, in normal and bold, when the
+     * sections are set. Rows then draw and check their label without measuring it in the UI
+     * thread, only labels that don't fit are ellipsized, once. It has no effect on XML rows.
+     * @param precompute True to precompute them
+     */
+    public void setPrecomputeLabels(boolean precompute) {
+        mPrecomputeLabels = precompute;
+        if(mAdapter != null) {
+            mAdapter.setPrecomputeLabelLayouts(precompute);
+        }
+    }
+
+    public boolean isPrecomputingLabels() {
+        return mPrecomputeLabels;
+    }
+
+    /**
+     * Configure View with custom attrs
+     * @param typedArray - A TypedArray
+     */
+    @TargetApi(18)
+    public void configureWithTypedArray(TypedArray typedArray) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(TRACE_CONFIGURE);
+        }
+        long start = System.nanoTime();
+
+        DeferredAttributes deferred = null;
+        if(!isInEditMode() && typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_lazyConfiguration, false)) {
+            deferred = new DeferredAttributes();
+        }
+
+        if(deferred != null) {
+            // Only references are deferred, plain colors are cheap to read
+            deferred.listBackgroundId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_background, -1);
+            deferred.mainDividerId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_main_divider, -1);
+            deferred.secondaryDividerId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_secondary_divider, -1);
+        }
+
+        if(deferred == null || deferred.listBackgroundId == -1) {
+            mListBackground = typedArray.getDrawable(R.styleable.GoogleNavigationDrawer_list_background);
+        }
+
+        mListWidth = typedArray.getDimension(R.styleable.GoogleNavigationDrawer_list_width, -1);
+
+        mListMainDividerHeight = (int) typedArray.getDimension(R.styleable.GoogleNavigationDrawer_list_main_divider_height, -1);
+        mListSecondaryDividerHeight = (int) typedArray.getDimension(R.styleable.GoogleNavigationDrawer_list_secondary_divider_height, -1);
+
+        if(deferred == null || deferred.mainDividerId == -1) {
+            mListMainDividerDrawable = typedArray.getDrawable(R.styleable.GoogleNavigationDrawer_list_main_divider);
+        }
+        if(deferred == null || deferred.secondaryDividerId == -1) {
+            mListSecondaryDividerDrawable = typedArray.getDrawable(R.styleable.GoogleNavigationDrawer_list_secondary_divider);
+        }
+
+        if(mListMainDividerDrawable == null && (deferred == null || deferred.mainDividerId == -1)) {
+            mListMainDivider = typedArray.getColor(R.styleable.GoogleNavigationDrawer_list_main_divider, -1);
+        }
+
+        if(mListSecondaryDividerDrawable == null && (deferred == null || deferred.secondaryDividerId == -1)) {
+            mListSecondaryDivider = typedArray.getColor(R.styleable.GoogleNavigationDrawer_list_secondary_divider, -1);
+        }
+
+        mListPaddingTop = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingTop, mListPaddingTop);
+        mListPaddingBottom = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingBottom, mListPaddingBottom);
+        mListPaddingRight = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingRight, mListPaddingRight);
+        mListPaddingLeft = typedArray.getDimensionPixelSize(R.styleable.GoogleNavigationDrawer_list_paddingLeft, mListPaddingLeft);
+
+        mDrawerGravity = typedArray.getInt(R.styleable.GoogleNavigationDrawer_drawer_gravity, mDrawerGravity);
+
+        if(!isInEditMode()) {
+            mUseSharedModel = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_sharedModel, mUseSharedModel);
+        }
+        int mainEntriesId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_mainSectionsEntries, -1);
+        int secondaryEntriesId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_secondarySectionsEntries, -1);
+        DrawerModelRegistry.Entry shared = null;
+        if(mUseSharedModel && !isInEditMode() && (mainEntriesId != -1 || secondaryEntriesId != -1)) {
+            // Read once for the whole app, icons included, so there's nothing left to defer
+            shared = DrawerModelRegistry.getInstance(getContext()).get(getResources(), mainEntriesId, secondaryEntriesId,
+                    typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_mainSectionsDrawables, -1),
+                    typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_secondarySectionsDrawables, -1));
+            mMainSections = shared.getMainSections();
+            mSecondarySections = shared.getSecondarySections();
+        } else {
+            mMainSections = Utils.convertToStringArray(typedArray.getTextArray(R.styleable.GoogleNavigationDrawer_list_mainSectionsEntries));
+            mSecondarySections = Utils.convertToStringArray(typedArray.getTextArray(R.styleable.GoogleNavigationDrawer_list_secondarySectionsEntries));
+        }
+        mSharedSections = shared;
+
+        mListPrimarySectionsBackgroundId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_mainSectionsBackground, -1);
+        mListSecondarySectionsBackgroundId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_secondarySectionsBackground, -1);
+
+        int mainSectDrawableId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_mainSectionsDrawables, -1);
+
+        if(!isInEditMode()) {
+
+            if (mMainSections != null) {
+                if (shared != null) {
+                    mMainSectionsDrawableIds = shared.getMainIcons();
+                } else if (deferred != null) {
+                    deferred.mainDrawablesId = mainSectDrawableId;
+                    mMainSectionsDrawableIds = null;
+                } else {
+                    mMainSectionsDrawableIds = readDrawableIds(mainSectDrawableId, mMainSections.length);
+                }
+            }
+
+            int secondarySectDrawableId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_secondarySectionsDrawables, -1);
+
+            if (mSecondarySections != null) {
+                if (shared != null) {
+                    mSecondarySectionsDrawableIds = shared.getSecondaryIcons();
+                } else if (deferred != null) {
+                    deferred.secondaryDrawablesId = secondarySectDrawableId;
+                    mSecondarySectionsDrawableIds = null;
+                } else {
+                    mSecondarySectionsDrawableIds = readDrawableIds(secondarySectDrawableId, mSecondarySections.length);
+                }
+            }
+
+            mIconCacheSize = typedArray.getInt(R.styleable.GoogleNavigationDrawer_list_iconCacheSize, mIconCacheSize);
+            if(typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_preloadIcons, false)) {
+                if (deferred != null) {
+                    deferred.preloadIcons = true;
+                } else {
+                    getDrawableCache().preload(mMainSectionsDrawableIds);
+                    getDrawableCache().preload(mSecondarySectionsDrawableIds);
+                }
+            }
+
+            LayoutInflater inflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+
+            int headerViewId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_headerView, -1);
+            if (headerViewId != -1) {
+                if (deferred != null) {
+                    deferred.headerLayoutId = headerViewId;
+                } else {
+                    mHeaderView = inflater.inflate(headerViewId, null);
+                }
+                mHeaderClickable = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_headerClickable, true);
+            }
+
+            int footerViewId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_footerView, -1);
+            if (footerViewId != -1) {
+                if (deferred != null) {
+                    deferred.footerLayoutId = footerViewId;
+                } else {
+                    mFooterView = inflater.inflate(footerViewId, null);
+                }
+                mFooterClickable = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_footerClickable, true);
+            }
+			
+            mSecondarySectionsClickable = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_secondarySectionsCheckable, true);
+
+            mUseFlatRows = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_flatRows, false);
+            mPrecomputeLabels = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_precomputeLabels, false);
+
+            mPreInflatedMainRows = typedArray.getInt(R.styleable.GoogleNavigationDrawer_list_preInflatedMainRows, 0);
+            mPreInflatedSecondaryRows = typedArray.getInt(R.styleable.GoogleNavigationDrawer_list_preInflatedSecondaryRows, 0);
+            setRowPreInflation(mPreInflatedMainRows, mPreInflatedSecondaryRows);
+
+            setListCreationDeferral(typedArray.getInt(R.styleable.GoogleNavigationDrawer_list_deferListCreation, DEFER_LIST_NONE));
+
+            setFilterBarEnabled(typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_filterBar, false));
+
+            setOptimizedSlide(typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_optimizedSlide, false));
+
+            setPrefetchOnSlide(typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_prefetchOnSlide, false));
+            setChunkedFirstRender(typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_chunkedFirstRender, false));
+            setChunkFrameBudget(typedArray.getFloat(R.styleable.GoogleNavigationDrawer_list_chunkFrameBudget, getChunkFrameBudget()));
+        }
+
+        typedArray.recycle();
+
+        mDeferredAttributes = deferred;
+        mConfigurationTimeNanos = System.nanoTime() - start;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Reads the drawable ids of a typed array resource
+     * @param arrayId The id of the array or -1
+     * @param count The number of sections
+     * @return An array of count ids, 0 for the sections without icon
+     */
+    private int[] readDrawableIds(int arrayId, int count) {
+        int[] drawableIds = new int[count];
+        if (arrayId != -1) {
+            TypedArray drawables = getResources().obtainTypedArray(arrayId);
+            for (int i = 0; i < count; i++) {
+                drawableIds[i] = drawables.getResourceId(i, 0);
+            }
+            drawables.recycle();
+        }
+        return drawableIds;
+    }
+
+    /**
+     * The ListView menu is inflated and added to de DrawerLayout
+     */
+    private void configureList() {
+        LayoutInflater inflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        mListView = (ListView) inflater.inflate(R.layout.navigation_list, this, false);
+        mListRowsShown = false;
+        mListInflationCount++;
+        if(mListContainer != null) {
+            // The container is the drawer, with its width and gravity, and the list fills it below the filter bar
+            mListView.setLayoutParams(new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, 0, 1));
+        } else {
+            if(mListWidth >= 0) {
+                ((LayoutParams) mListView.getLayoutParams()).width = (int) mListWidth;
+            }
+            ((DrawerLayout.LayoutParams) mListView.getLayoutParams()).gravity = mDrawerGravity;
+        }
+
+        if(mListBackgroundColor != -1) {
+            setListBackgroundColor(mListBackgroundColor);
+        }
+
+        if(mListBackground != null) {
+            setListBackground(mListBackground);
+        }
+
+        mListView.setPadding(mListPaddingLeft, mListPaddingTop, mListPaddingRight, mListPaddingBottom);
+        if(hasMenuHeader()) {
+            attachHeaderSlot();
+        }
+        if(hasMenuFooter()) {
+            attachFooterSlot();
+        }
+        if(mListContainer != null) {
+            mListContainer.addView(mListView);
+        } else if(!mWaitingForInflation) {
+            addView(mListView);
+        }
+        updateDrawerBackground();
+
+        mListView.setOnScrollListener(mFlingObserver);
+        mListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> adapterView, View view, int i, long l) {
+
+                if(hasMenuHeader() && i == 0 && !mHeaderClickable) {
+                    return;
+                }
+
+                if(hasMenuFooter() && i == mListView.getCount()-1 && !mFooterClickable) {
+                    return;
+                }
+                int section = i - mListView.getHeaderViewsCount();
+                if(mAdapter != null && section >= 0 && section < mAdapter.getCount() && mAdapter.isGroup(section)) {
+                    // Groups only show or hide their children, the drawer stays open
+                    mAdapter.toggleGroup(section);
+                    return;
+                }
+                boolean checkable = mAdapter == null || section < 0 || section >= mAdapter.getCount() || mAdapter.isCheckable(section);
+                if (checkable && (mSecondarySectionsClickable || mListView.getAdapter().getItemViewType(i) == GoogleNavigationDrawerAdapter.TYPE_MAIN))
+                    check(i);
+
+                if(mSelectionListener != null) {
+                    if(view == mHeaderSlot) {
+                        view = mHeaderView;
+                    } else if(view == mFooterSlot) {
+                        view = mFooterView;
+                    }
+                    mSelectionListener.onSectionSelected(view, i, l);
+                }
+
+                if (mShouldChangeTitle && i != 0 && i != mListView.getCount() - 1) {
+                    CharSequence title = (CharSequence) mListView.getAdapter().getItem(i);
+                    mActivity.setTitle(title);
+                }
+
+                closeDrawerMenu();
+            }
+        });
+    }
+
+    /**
+     * Moves the section rows of a ListView that is going to be discarded to the shared row pool,
+     * so the next ListView can reuse them instead of inflating them again.
+     * @param listView The detached ListView
+     */
+    private void recycleListRows(ListView listView) {
+        int childCount = listView.getChildCount();
+        View[] rows = new View[childCount];
+        for(int i = 0; i < childCount; i++) {
+            rows[i] = listView.getChildAt(i);
+        }
+        listView.removeAllViewsInLayout();
+        for(View row : rows) {
+            int viewType = GoogleNavigationDrawerAdapter.getRowViewType(row);
+            if(viewType != GoogleNavigationDrawerAdapter.IGNORE_ITEM_VIEW_TYPE) {
+                mRowPool.putRecycledRow(viewType, row);
+            }
+        }
+    }
+
+    /**
+     * The way to set the ListView adapter items
+     * @param mainSections A String array with the main section titles. Cannot be null.
+     * @param secondarySections A String array with the secondary section titles. May be null.
+     * @param mainDrawableIds An integer array with the ids of the main sections icons. Must have the same length as mainSections. May be null.
+     * @param secondaryDrawableIds An integer array with the ids of the secondary sections icons. Must have the same length as secondarySections. May be null.
+     */
+    public void setListViewSections(String[] mainSections, String[] secondarySections, int[] mainDrawableIds, int[] secondaryDrawableIds) {
+        setListViewSections(SectionModel.fromArrays(mainSections, secondarySections, mainDrawableIds, secondaryDrawableIds));
+    }
+
+    /**
+     * Same as setListViewSections with arrays, but taking the sections from a SectionModel, which
+     * can also hold your own section ids and enabled and checkable flags.
+     * @param model The sections. Cannot be null.
+     */
+    public void setListViewSections(SectionModel model) {
+        setListViewSections(model, null);
+    }
+
+    /**
+     * Same as setListViewSections, but for menus too big to be held in memory: sections are
+     * loaded in pages from the source, only around the visible rows. Rows of pages still loading
+     * are shown as disabled placeholders. Use getSectionPager to tune the pages.
+     * @param source The source of the sections. Cannot be null.
+     * @param loadInBackground True to load the pages from a background thread
+     */
+    public void setListViewSections(SectionSource source, boolean loadInBackground) {
+        setListViewSections(SectionModel.EMPTY, new SectionPager(source, loadInBackground));
+    }
+
+    /**
+     * @return The pager of the sections given as a SectionSource or null
+     */
+    public SectionPager getSectionPager() {
+        return mAdapter == null ? null : mAdapter.getSectionPager();
+    }
+
+    private void setListViewSections(final SectionModel model, final SectionPager pager) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setListViewSections(model, pager);
+            }
+        })) {
+            return;
+        }
+        if(!isInEditMode()) {
+            if(mListView == null) {
+                configureList();
+            }
+            GoogleNavigationDrawerAdapter adapter = new GoogleNavigationDrawerAdapter(getContext(), withIconSources(model));
+            adapter.setRecycledRowPool(mRowPool);
+            adapter.setUseFlatRows(mUseFlatRows);
+            adapter.setPrecomputeLabelLayouts(mPrecomputeLabels);
+            adapter.setDrawableCache(getDrawableCache());
+            if(mMainSectionsIconSources != null || mSecondarySectionsIconSources != null) {
+                adapter.setIconLoader(getIconLoader());
+            }
+            adapter.setIconPlaceholderResId(mIconPlaceholderResId);
+            adapter.setChildProvider(mChildProvider);
+            adapter.setLoadChildrenInBackground(mLoadChildrenInBackground);
+            adapter.setSectionBadges(mBadges);
+            adapter.setMetrics(mMetrics);
+            adapter.registerDataSetObserver(mCheckedSectionFollower);
+            if(mAdapter != null) {
+                mAdapter.setSectionPager(null);
+            }
+            adapter.setSectionPager(pager);
+    
+            if(mListMainDividerHeight != -1) {
+                adapter.setMainDividerHeight(mListMainDividerHeight);
+            }
+    
+            if(mListMainDivider != -1) {
+                adapter.setMainDividerColor(mListMainDivider);
+            }
+    
+            if(mListMainDividerDrawable != null) {
+                adapter.setMainDividerDrawable(mListMainDividerDrawable);
+            }
+    
+            if(mListSecondaryDividerHeight != -1) {
+                adapter.setSecondaryDividerHeight(mListSecondaryDividerHeight);
+            }
+    
+            if(mListSecondaryDivider != -1) {
+                adapter.setSecondaryDividerColor(mListSecondaryDivider);
+            }
+    
+            if(mListSecondaryDividerDrawable != null) {
+                adapter.setSecondaryDividerDrawable(mListSecondaryDividerDrawable);
+            }
+    
+            if(mListPrimarySectionsBackgroundId >= 0) {
+                adapter.setMainBackResId(mListPrimarySectionsBackgroundId);
+            } else if(mOptimizedSlide && getResources().getColor(R.color.main_section_selected) == Color.TRANSPARENT) {
+                // The default main section background is transparent whether it's checked or not
+                adapter.setMainBackResId(0);
+            }
+    
+            if(mListSecondarySectionsBackgroundId >= 0) {
+                adapter.setSecondaryBackResId(mListSecondarySectionsBackgroundId);
+            }
+    
+            mSectionsUpdateGeneration++;
+            if(mAdapter != null) {
+                mAdapter.releasePrefetchedRows();
+            }
+            mAdapter = adapter;
+            mListView.setAdapter(adapter);
+            startPopulation();
+            if((mChunkedFirstRender || mListHiddenForPopulation) && !populateInChunks()) {
+                // The new adapter is shown as usual, with the rows that were being prepared
+                revealPopulatedList();
+            }
+            int checkedSection = mCheckedSectionId != SectionModel.NO_STABLE_ID ? adapter.getPositionForId(mCheckedSectionId) : SectionModel.NO_POSITION;
+            if(checkedSection != SectionModel.NO_POSITION) {
+                // The same section is still in the menu, keep it checked
+                check(checkedSection + mListView.getHeaderViewsCount());
+            } else if(hasMenuHeader() && !isHeaderClickable()) {
+                check(1);
+            } else {
+                check(0);
+            }
+            if(mFilterBar != null) {
+                // Paged sections aren't in memory to be indexed, they can't be filtered
+                buildSectionIndex(pager == null ? adapter.getSectionModel() : null);
+            }
+            schedulePreInflation();
+        }
+    }
+
+    /**
+     * Rows can move when a group is expanded or collapsed, so the checked position follows the
+     * checked section id. If it's hidden in a collapsed group it's checked again on expanding it.
+     */
+    private final DataSetObserver mCheckedSectionFollower = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            if(mAdapter == null || mListView == null) {
+                return;
+            }
+            if(mCheckedSectionId == SectionModel.NO_STABLE_ID) {
+                // Placeholders of paged sections have no id, keep the position until it's loaded
+                if(checkPosition < mListView.getCount() && !isRowChecked(checkPosition)) {
+                    setRowChecked(checkPosition, true);
+                }
+                mCheckedSectionId = getSectionId(checkPosition);
+                return;
+            }
+            int section = mAdapter.getPositionForId(mCheckedSectionId);
+            if(section == SectionModel.NO_POSITION) {
+                return;
+            }
+            int position = section + mListView.getHeaderViewsCount();
+            if(position != checkPosition || !isRowChecked(position)) {
+                check(position);
+            }
+        }
+    };
+
+    /**
+     * Adds the icon sources given to setIconSources, if any, to the sections.
+     */
+    private SectionModel withIconSources(SectionModel model) {
+        if(mMainSectionsIconSources == null && mSecondarySectionsIconSources == null) {
+            return model;
+        }
+        return new SectionModel.Builder(model)
+                .setMainIconSources(mMainSectionsIconSources)
+                .setSecondaryIconSources(mSecondarySectionsIconSources)
+                .build();
+    }
+
+    /**
+     * Update the sections of an already populated menu. Unlike setListViewSections, the adapter
+     * and its rows are kept: only the rows that changed are bound again and, if no section was
+     * inserted, removed or moved, the ListView isn't even laid out again.
+     * Big menus are diffed in a background thread and the result is applied on the UI thread.
+     * While the sections are filtered they're replaced, and filtered again, instead.
+     * @param mainSections A String array with the main section titles. Cannot be null.
+     * @param secondarySections A String array with the secondary section titles. May be null.
+     * @param mainDrawableIds An integer array with the ids of the main sections icons. May be null.
+     * @param secondaryDrawableIds An integer array with the ids of the secondary sections icons. May be null.
+     */
+    public void updateListViewSections(String[] mainSections, String[] secondarySections, int[] mainDrawableIds, int[] secondaryDrawableIds) {
+        updateListViewSections(SectionModel.fromArrays(mainSections, secondarySections, mainDrawableIds, secondaryDrawableIds));
+    }
+
+    /**
+     * Same as updateListViewSections with arrays, but taking the sections from a SectionModel.
+     * Sections are matched by their stable id, so a section keeps its row, and stays checked,
+     * even if it's moved or renamed. Sections without an id are matched by their type and label.
+     * @param model The new sections. Cannot be null.
+     */
+    public void updateListViewSections(SectionModel model) {
+        if(isInEditMode()) {
+            return;
+        }
+
+        final GoogleNavigationDrawerAdapter adapter = mAdapter;
+        // Paged sections can't be diffed and, while filtering, the adapter only has the matching sections
+        if(adapter == null || mListView == null || adapter.getSectionPager() != null || isFilteringSections()) {
+            setListViewSections(model);
+            return;
+        }
+
+        final SectionModel base = adapter.getSectionModel();
+        final SectionModel sections = withIconSources(model);
+        final int generation = ++mSectionsUpdateGeneration;
+
+        if(Math.max(adapter.getCount(), sections.getCount()) < SectionsDiff.BACKGROUND_DIFF_THRESHOLD) {
+            SectionsDiff diff = SectionsDiff.calculate(base, sections);
+            applySectionsUpdate(adapter, diff, base, sections);
+            return;
+        }
+
+        BackgroundWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SectionsDiff diff = SectionsDiff.calculate(base, sections);
+                BackgroundWorker.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A newer update or a new adapter makes this diff useless
+                        if(generation == mSectionsUpdateGeneration && adapter == mAdapter) {
+                            applySectionsUpdate(adapter, diff, base, sections);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void applySectionsUpdate(GoogleNavigationDrawerAdapter adapter, SectionsDiff diff, SectionModel base, SectionModel model) {
+        if(adapter.getSectionModel() != base) {
+            // The sections were filtered meanwhile, so the diff doesn't apply to them anymore
+            setListViewSections(model);
+            return;
+        }
+        applySectionsDiff(adapter, diff, model);
+        if(mFilterBar != null) {
+            buildSectionIndex(model);
+        }
+    }
+
+    private void applySectionsDiff(GoogleNavigationDrawerAdapter adapter, SectionsDiff diff, SectionModel model) {
+        long start = System.nanoTime();
+        int headerCount = mListView.getHeaderViewsCount();
+        int oldCount = adapter.getCount();
+        int checkedSection = checkPosition - headerCount;
+
+        adapter.setSectionModel(model);
+
+        int firstPosition = mListView.getFirstVisiblePosition();
+        int newCount = adapter.getCount();
+        int rebound = 0;
+        // The diff has model positions, which only match list positions without child rows
+        boolean structural = diff.isStructural() || adapter.getChildRowCount() > 0;
+        for(int i = 0; i < mListView.getChildCount(); i++) {
+            int section = firstPosition + i - headerCount;
+            if(section < 0 || section >= newCount) {
+                continue;
+            }
+            if(structural) {
+                rebound++;
+            } else if(diff.isChanged(section)) {
+                adapter.getView(section, mListView.getChildAt(i), mListView);
+                rebound++;
+            }
+        }
+
+        if(structural) {
+            adapter.notifyDataSetChanged();
+            if(checkedSection >= 0 && checkedSection < oldCount) {
+                // Follow the checked section by its stable id, or by the diff if it was renamed
+                int newCheckedSection = adapter.getPositionForId(mCheckedSectionId);
+                if(newCheckedSection == SectionModel.NO_POSITION && adapter.getChildRowCount() == 0 && !isFilteringSections()) {
+                    newCheckedSection = diff.getNewPosition(checkedSection);
+                }
+                if(newCheckedSection != SectionsDiff.NO_POSITION) {
+                    check(newCheckedSection + headerCount);
+                } else if(isFilteringSections()) {
+                    // The checked section is only hidden by the filter, it's checked again when it shows up
+                    setRowChecked(checkPosition, false);
+                } else {
+                    check(headerCount);
+                }
+            }
+        } else {
+            // A section renamed in place may have a new derived id
+            mCheckedSectionId = getSectionId(checkPosition);
+        }
+
+        diff.setReboundRowCount(rebound);
+        diff.setApplyTimeNanos(System.nanoTime() - start);
+        mLastSectionsDiff = diff;
+    }
+
+    /**
+     * Returns the changes applied by the last call to updateListViewSections, including how many
+     * rows were bound again and how long it took to compute and apply them.
+     * @return The last applied diff or null if there's none
+     */
+    public SectionsDiff getLastSectionsDiff() {
+        return mLastSectionsDiff;
+    }
+
+    /**
+     * Show a text field above the menu that filters its sections as the user types. Labels are
+     * matched ignoring case and accents and the results are ranked, best matches first. Sections
+     * given as a SectionSource can't be filtered.
+     * While filtering, positions given to OnNavigationSectionSelected are the ones of the matching
+     * sections; use the section id to know which one was selected.
+     * @param enabled True to show the filter bar, false to remove it and show all the sections
+     */
+    public void setFilterBarEnabled(boolean enabled) {
+        if(enabled == (mFilterBar != null)) {
+            return;
+        }
+        if(!enabled) {
+            SectionModel unfiltered = mUnfilteredModel;
+            boolean filtered = mAdapter != null && unfiltered != null && mAdapter.getSectionModel() != unfiltered;
+            mFilterBar.removeTextChangedListener(mFilterWatcher);
+            mListContainer.removeView(mFilterBar);
+            mFilterBar = null;
+            mFilterQuery = "";
+            buildSectionIndex(null);
+            if(filtered) {
+                setListViewSections(unfiltered);
+            }
+            return;
+        }
+        ensureListContainer();
+        LayoutInflater inflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        mFilterBar = (EditText) inflater.inflate(R.layout.navigation_filter_bar, mListContainer, false);
+        mFilterBar.addTextChangedListener(mFilterWatcher);
+        mListContainer.addView(mFilterBar, 0);
+        if(mAdapter != null) {
+            buildSectionIndex(mAdapter.getSectionPager() == null ? mAdapter.getSectionModel() : null);
+        }
+    }
+
+    /**
+     * Makes the container the drawer, moving the ListView into it if it exists. While the drawer
+     * is being inflated the container is only added in onFinishInflate, after the content.
+     */
+    private void ensureListContainer() {
+        if(mListContainer != null) {
+            return;
+        }
+        attachListContainer();
+        if(mListView != null) {
+            // The ListView was the drawer, now it goes below the filter bar
+            removeView(mListView);
+            mListView.setLayoutParams(new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, 0, 1));
+            mListContainer.addView(mListView);
+            updateDrawerBackground();
+        }
+    }
+
+    public boolean isFilterBarEnabled() {
+        return mFilterBar != null;
+    }
+
+    /**
+     * @return The text field of the filter bar or null if it isn't enabled
+     */
+    public EditText getFilterBar() {
+        return mFilterBar;
+    }
+
+    private final TextWatcher mFilterWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            filterSections(s);
+        }
+    };
+
+    /**
+     * Show only the sections matching the query, as the filter bar does when the user types.
+     * Only the rows that changed are bound again and big menus are searched in a background
+     * thread. Does nothing if the filter bar isn't enabled.
+     * @param query The text to look for. Null or empty to show all the sections.
+     */
+    public void filterSections(CharSequence query) {
+        mFilterQuery = query == null ? "" : query.toString();
+        final int generation = ++mFilterGeneration;
+        final GoogleNavigationDrawerAdapter adapter = mAdapter;
+        final SectionIndex index = mSectionIndex;
+        if(adapter == null || mListView == null || index == null) {
+            // The query is applied once the index is built
+            return;
+        }
+
+        final String text = mFilterQuery;
+        final SectionIndex.Result previous = mLastFilterResult;
+        final SectionModel shown = adapter.getSectionModel();
+
+        if(index.getModel().getCount() < SectionIndex.BACKGROUND_SEARCH_THRESHOLD) {
+            SectionIndex.Result result = index.search(text, previous);
+            SectionModel model = getFilteredModel(index, result);
+            applyFilterResult(adapter, result, model, SectionsDiff.calculate(shown, model));
+            return;
+        }
+
+        BackgroundWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SectionIndex.Result result = index.search(text, previous);
+                final SectionModel model = getFilteredModel(index, result);
+                final SectionsDiff diff = SectionsDiff.calculate(shown, model);
+                BackgroundWorker.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        // The user kept typing or the sections changed, a newer search is coming
+                        if(generation == mFilterGeneration && adapter == mAdapter) {
+                            applyFilterResult(adapter, result, model, diff);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static SectionModel getFilteredModel(SectionIndex index, SectionIndex.Result result) {
+        // An empty query shows all the sections
+        return result.getQuery().length() == 0 ? index.getModel() : index.getModel().select(result.getPositions());
+    }
+
+    private void applyFilterResult(GoogleNavigationDrawerAdapter adapter, SectionIndex.Result result, SectionModel model, SectionsDiff diff) {
+        mLastFilterResult = result.getQuery().length() == 0 ? null : result;
+        applySectionsDiff(adapter, diff, model);
+    }
+
+    /**
+     * Indexes the sections in a background thread if there are many of them, and filters them
+     * again if there's a query
+     * @param model The sections or null if they can't be filtered
+     */
+    private void buildSectionIndex(final SectionModel model) {
+        mUnfilteredModel = model;
+        mSectionIndex = null;
+        mLastFilterResult = null;
+        // Searches on the previous sections are useless now
+        mFilterGeneration++;
+        if(model == null) {
+            return;
+        }
+        if(model.getCount() < SectionIndex.BACKGROUND_SEARCH_THRESHOLD) {
+            onSectionIndexBuilt(new SectionIndex(model));
+            return;
+        }
+        BackgroundWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final SectionIndex index = new SectionIndex(model);
+                BackgroundWorker.postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(model == mUnfilteredModel) {
+                            onSectionIndexBuilt(index);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onSectionIndexBuilt(SectionIndex index) {
+        mSectionIndex = index;
+        if(isFilteringSections()) {
+            filterSections(mFilterQuery);
+        }
+    }
+
+    /**
+     * @return true if only the sections matching a query are shown
+     */
+    public boolean isFilteringSections() {
+        return mFilterBar != null && mFilterQuery.length() > 0;
+    }
+
+    /**
+     * @return The index of the sections used by the filter bar or null if it isn't built
+     */
+    public SectionIndex getSectionIndex() {
+        return mSectionIndex;
+    }
+
+    /**
+     * @return The result of the last search applied, with how long it took, or null if the
+     * sections aren't filtered
+     */
+    public SectionIndex.Result getLastFilterResult() {
+        return mLastFilterResult;
+    }
+
+    /**
+     * Check an item on the ListView
+     * @param position The position to check
+     */
+    public void check(final int position) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                check(position);
+            }
+        })) {
+            return;
+        }
+        long start = mMetrics != DrawerMetrics.NONE ? System.nanoTime() : 0;
+        setRowChecked(position, true);
+        checkPosition = position;
+        mCheckedSectionId = getSectionId(position);
+        if(start != 0) {
+            mMetrics.onCheck(System.nanoTime() - start);
+        }
+    }
 
-                if (mainSectDrawableId != -1) {
-                    TypedArray mainSectTypedArray = getResources().obtainTypedArray(mainSectDrawableId);
-                    for (int i = 0; i < mMainSections.length; i++) {
-                        mMainSectionsDrawableIds[i] = mainSectTypedArray.getResourceId(i, 0);
-                    }
-                    mainSectTypedArray.recycle();
-                }
+    /**
+     * Checks or unchecks a row. The checked section is kept by the adapter, so only the rows
+     * that change are updated, if they're visible, instead of laying out the whole list again
+     * like ListView.setItemChecked does.
+     * @param position The position in the ListView, including the header
+     * @param checked True to check it, unchecking the previous one
+     */
+    private void setRowChecked(int position, boolean checked) {
+        int headerCount = mListView.getHeaderViewsCount();
+        int previous = mAdapter != null ? mAdapter.getCheckedPosition() : SectionModel.NO_POSITION;
+        int section = position - headerCount;
+        if(mAdapter == null || section < 0 || section >= mAdapter.getCount()) {
+            // Headers and footers aren't bound by the adapter
+            section = SectionModel.NO_POSITION;
+        }
+        if(checked) {
+            if(previous != SectionModel.NO_POSITION && previous != section) {
+                setVisibleRowChecked(previous + headerCount, false);
             }
-
-            int secondarySectDrawableId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_secondarySectionsDrawables, -1);
-
-            if (mSecondarySections != null) {
-                mSecondarySectionsDrawableIds = new int[mSecondarySections.length];
-
-                if (secondarySectDrawableId != -1) {
-                    TypedArray secondarySectTypedArray = getResources().obtainTypedArray(secondarySectDrawableId);
-                    for (int i = 0; i < mSecondarySections.length; i++) {
-                        mSecondarySectionsDrawableIds[i] = secondarySectTypedArray.getResourceId(i, 0);
-                    }
-                    secondarySectTypedArray.recycle();
-                }
+            if(mCheckedFixedRow != AdapterView.INVALID_POSITION && mCheckedFixedRow != position) {
+                setVisibleRowChecked(mCheckedFixedRow, false);
             }
-
-            LayoutInflater inflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-
-            int headerViewId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_headerView, -1);
-            if (headerViewId != -1) {
-                mHeaderView = inflater.inflate(headerViewId, null);
-                mHeaderClickable = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_headerClickable, true);
+            if(mAdapter != null) {
+                mAdapter.setCheckedPosition(section);
             }
-
-            int footerViewId = typedArray.getResourceId(R.styleable.GoogleNavigationDrawer_list_footerView, -1);
-            if (footerViewId != -1) {
-                mFooterView = inflater.inflate(footerViewId, null);
-                mFooterClickable = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_footerClickable, true);
+            mCheckedFixedRow = section == SectionModel.NO_POSITION ? position : AdapterView.INVALID_POSITION;
+            setVisibleRowChecked(position, true);
+        } else {
+            if(section != SectionModel.NO_POSITION && section == previous) {
+                mAdapter.setCheckedPosition(SectionModel.NO_POSITION);
             }
-			
-            mSecondarySectionsClickable = typedArray.getBoolean(R.styleable.GoogleNavigationDrawer_list_secondarySectionsCheckable, true);
+            if(position == mCheckedFixedRow) {
+                mCheckedFixedRow = AdapterView.INVALID_POSITION;
+            }
+            setVisibleRowChecked(position, false);
         }
+    }
 
-        typedArray.recycle();
+    private void setVisibleRowChecked(int position, boolean checked) {
+        View row = mListView.getChildAt(position - mListView.getFirstVisiblePosition());
+        if(row instanceof Checkable) {
+            ((Checkable) row).setChecked(checked);
+        }
+    }
 
+    private boolean isRowChecked(int position) {
+        int section = position - mListView.getHeaderViewsCount();
+        if(mAdapter == null || section < 0 || section >= mAdapter.getCount()) {
+            return position == mCheckedFixedRow;
+        }
+        return mAdapter.getCheckedPosition() == section;
     }
 
     /**
-     * The ListView menu is inflated and added to de DrawerLayout
+     * Check the section with the given stable id, which is kept checked even if the sections are
+     * reordered or updated.
+     * @param sectionId The stable id of the section, as returned by getCheckedSectionId
+     * @return false if there's no section with this id. While the ListView creation is deferred
+     * it's always true and the section is checked, if it exists, when the ListView is created.
      */
-    private void configureList() {
-        LayoutInflater inflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-        mListView = (ListView) inflater.inflate(R.layout.navigation_list, this, false);
-        if(mListWidth >= 0) {
-            ((LayoutParams) mListView.getLayoutParams()).width = (int) mListWidth;
+    public boolean checkSectionById(final long sectionId) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                checkSectionById(sectionId);
+            }
+        })) {
+            return true;
         }
-
-        if(mListBackgroundColor != -1) {
-            setListBackgroundColor(mListBackgroundColor);
+        if(mAdapter == null) {
+            return false;
         }
-
-        if(mListBackground != null) {
-            setListBackground(mListBackground);
+        int section = mAdapter.getPositionForId(sectionId);
+        if(section == SectionModel.NO_POSITION) {
+            return false;
         }
+        check(section + mListView.getHeaderViewsCount());
+        return true;
+    }
 
-        mListView.setPadding(mListPaddingLeft, mListPaddingTop, mListPaddingRight, mListPaddingBottom);
-        ((DrawerLayout.LayoutParams) mListView.getLayoutParams()).gravity = mDrawerGravity;
-        if(mHeaderView != null) {
-            setMenuHeader(mHeaderView,mHeaderClickable);
+    /**
+     * Show a count at the end of a section, like its number of unread items. Changes are applied
+     * at most once per frame, binding again only the badges of the visible rows whose count
+     * changed, so it can be called as often as the counts change. Call it from the UI thread.
+     * @param sectionId The stable id of the section, as returned by getCheckedSectionId
+     * @param count The count, 0 or less to remove the badge
+     */
+    public void setSectionBadge(long sectionId, int count) {
+        if(mBadges.set(sectionId, count)) {
+            scheduleBadgeUpdate();
         }
-        if(mFooterView != null) {
-            setMenuFooter(mFooterView,mFooterClickable);
+    }
+
+    public void clearSectionBadge(long sectionId) {
+        setSectionBadge(sectionId, SectionBadges.NO_BADGE);
+    }
+
+    /**
+     * Remove the badges of all the sections
+     */
+    public void clearSectionBadges() {
+        mBadges.clear();
+        if(mBadges.hasChanges()) {
+            scheduleBadgeUpdate();
         }
-        addView(mListView);
+    }
 
-        mListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int i, long l) {
+    /**
+     * @return The badge count of the section or 0 if it has no badge
+     */
+    public int getSectionBadge(long sectionId) {
+        return mBadges.get(sectionId);
+    }
 
-                if(mHeaderView != null && i == 0 && !mHeaderClickable) {
-                    return;
-                }
+    private void scheduleBadgeUpdate() {
+        if(mBadgeUpdateScheduled || mListView == null) {
+            // Without a ListView, the badges are bound with the rows once it's created
+            return;
+        }
+        mBadgeUpdateScheduled = true;
+        ViewCompat.postOnAnimation(mListView, mBadgeUpdater);
+    }
 
-                if(mFooterView != null && i == mListView.getCount()-1 && !mFooterClickable) {
-                    return;
-                }
-                if (mSecondarySectionsClickable || mListView.getAdapter().getItemViewType(i) == GoogleNavigationDrawerAdapter.TYPE_MAIN)
-                    check(i);
+    private final Runnable mBadgeUpdater = new Runnable() {
+        @Override
+        public void run() {
+            mBadgeUpdateScheduled = false;
+            applyBadgeChanges();
+        }
+    };
 
-                if(mSelectionListener != null) {
-                    mSelectionListener.onSectionSelected(view, i, l);
+    /**
+     * Binds again the badges of the visible rows whose count changed. Rows that aren't visible
+     * get their badge when they're bound.
+     */
+    private void applyBadgeChanges() {
+        if(mAdapter != null && mListView != null && mBadges.hasChanges()) {
+            int headerCount = mListView.getHeaderViewsCount();
+            int firstPosition = mListView.getFirstVisiblePosition();
+            int count = mAdapter.getCount();
+            for(int i = 0; i < mListView.getChildCount(); i++) {
+                int section = firstPosition + i - headerCount;
+                if(section < 0 || section >= count) {
+                    continue;
                 }
-
-                if (mShouldChangeTitle && i != 0 && i != mListView.getCount() - 1) {
-                    CharSequence title = (CharSequence) mListView.getAdapter().getItem(i);
-                    mActivity.setTitle(title);
+                long sectionId = mAdapter.getItemId(section);
+                if(sectionId != SectionModel.NO_STABLE_ID && mBadges.isChanged(sectionId)) {
+                    mAdapter.bindBadge(mListView.getChildAt(i), section);
+                    mBadgeRowsRebound++;
                 }
-
-                closeDrawerMenu();
             }
-        });
+            mBadgeUpdateCount++;
+        }
+        mBadges.clearChanges();
     }
 
     /**
-     * The way to set the ListView adapter items
-     * @param mainSections A String array with the main section titles. Cannot be null.
-     * @param secondarySections A String array with the secondary section titles. May be null.
-     * @param mainDrawableIds An integer array with the ids of the main sections icons. Must have the same length as mainSections. May be null.
-     * @param secondaryDrawableIds An integer array with the ids of the secondary sections icons. Must have the same length as secondarySections. May be null.
+     * Number of frames in which badge changes were applied. Many calls to setSectionBadge in the
+     * same frame only count once.
+     * @return The number of badge updates
      */
-    public void setListViewSections(String[] mainSections, String[] secondarySections, int[] mainDrawableIds, int[] secondaryDrawableIds) {
-        if(!isInEditMode()) {
-            if(mListView == null) {
-                configureList();
-            }
-            GoogleNavigationDrawerAdapter adapter = new GoogleNavigationDrawerAdapter(getContext(), mainSections, secondarySections, mainDrawableIds, secondaryDrawableIds);
-    
-            if(mListMainDividerHeight != -1) {
-                adapter.setMainDividerHeight(mListMainDividerHeight);
-            }
-    
-            if(mListMainDivider != -1) {
-                adapter.setMainDividerColor(mListMainDivider);
-            }
-    
-            if(mListMainDividerDrawable != null) {
-                adapter.setMainDividerDrawable(mListMainDividerDrawable);
-            }
-    
-            if(mListSecondaryDividerHeight != -1) {
-                adapter.setSecondaryDividerHeight(mListSecondaryDividerHeight);
-            }
-    
-            if(mListSecondaryDivider != -1) {
-                adapter.setSecondaryDividerColor(mListSecondaryDivider);
-            }
-    
-            if(mListSecondaryDividerDrawable != null) {
-                adapter.setSecondaryDividerDrawable(mListSecondaryDividerDrawable);
-            }
-    
-            if(mListPrimarySectionsBackgroundId >= 0) {
-                adapter.setMainBackResId(mListPrimarySectionsBackgroundId);
-            }
-    
-            if(mListSecondarySectionsBackgroundId >= 0) {
-                adapter.setSecondaryBackResId(mListSecondarySectionsBackgroundId);
-            }
-    
-            mListView.setAdapter(adapter);
-            if(mHeaderView != null && !isHeaderClickable()) {
-                check(1);
-            } else {
-                check(0);
-            }
-        }
+    public int getBadgeUpdateCount() {
+        return mBadgeUpdateCount;
     }
 
     /**
-     * Check an item on the ListView
-     * @param position The position to check
+     * @return The number of rows whose badge was bound again by the badge updates
      */
-    public void check(int position) {
-        mListView.setItemChecked(checkPosition, false);
-        mListView.setItemChecked(position, true);
-        checkPosition = position;
+    public int getBadgeRowsReboundCount() {
+        return mBadgeRowsRebound;
+    }
+
+    /**
+     * @return The stable id of the checked section or SectionModel.NO_STABLE_ID if the header,
+     * the footer or nothing is checked
+     */
+    public long getCheckedSectionId() {
+        return mCheckedSectionId;
+    }
+
+    private long getSectionId(int listPosition) {
+        if(mAdapter == null || mListView == null) {
+            return SectionModel.NO_STABLE_ID;
+        }
+        int section = listPosition - mListView.getHeaderViewsCount();
+        if(section < 0 || section >= mAdapter.getCount()) {
+            return SectionModel.NO_STABLE_ID;
+        }
+        return mAdapter.getItemId(section);
     }
 
 
@@ -411,21 +2447,23 @@ public class GoogleNavigationDrawer extends DrawerLayout {
      * @return whether it's opened or not
      */
     public boolean isDrawerMenuOpen() {
-        return super.isDrawerOpen(mListView);
+        return super.isDrawerOpen(getDrawerView());
     }
 
     /**
      * Helper to open the ListView menu.
      */
     public void openDrawerMenu() {
-        super.openDrawer(mListView);
+        onOpenRequested();
+        revealPopulatedList();
+        super.openDrawer(getDrawerView());
     }
 
     /**
      * Helper to close the ListView menu.
      */
     public void closeDrawerMenu() {
-        super.closeDrawer(mListView);
+        super.closeDrawer(getDrawerView());
     }
 
     /**
@@ -441,37 +2479,35 @@ public class GoogleNavigationDrawer extends DrawerLayout {
      * @param v The header view
      */
     public void setMenuHeader(View v) {
-        if(mListView != null) {
-            if(mListView.getAdapter() != null) {
-                ListAdapter adapter = (ListAdapter) mListView.getAdapter();
-                removeView(mListView);
-                configureList();
-                mListView.addHeaderView(v, null, isHeaderClickable());
-                mListView.setAdapter(adapter);
-            } else {
-                mListView.addHeaderView(v, null, isHeaderClickable());
-            }
-            mHeaderView = v;
-        }
+        setMenuHeader(v, isHeaderClickable());
     }
 
     /**
-     * Set a custom header view
+     * Set a custom header view. If there was already a header with the same clickable state,
+     * it's replaced in place without re-creating the ListView.
      * @param v The header view
      */
-    public void setMenuHeader(View v, boolean clickable) {
+    public void setMenuHeader(final View v, final boolean clickable) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setMenuHeader(v, clickable);
+            }
+        })) {
+            return;
+        }
         if(mListView != null) {
+            boolean inPlace = mHeaderSlotList == mListView && clickable == isHeaderClickable();
             setHeaderClickable(clickable);
-            if(mListView.getAdapter() != null) {
-                ListAdapter adapter = (ListAdapter) mListView.getAdapter();
-                removeView(mListView);
-                configureList();
-                mListView.addHeaderView(v, null, isHeaderClickable());
-                mListView.setAdapter(adapter);
+            mHeaderView = v;
+            if(inPlace) {
+                fillSlot(mHeaderSlot, v);
+                mListRebuildsAvoided++;
+            } else if(mListView.getAdapter() != null) {
+                rebuildList();
             } else {
-                mListView.addHeaderView(v, null, isHeaderClickable());
+                attachHeaderSlot();
             }
-            mHeaderView = v;
         }
     }
 
@@ -484,51 +2520,164 @@ public class GoogleNavigationDrawer extends DrawerLayout {
     }
 
     /**
-     * Set a custom footer view
+     * Set a custom footer view. If there was already a footer with the same clickable state,
+     * it's replaced in place without re-creating the ListView.
      * @param v The footer view
      */
-    public void setMenuFooter(View v, boolean clickable) {
+    public void setMenuFooter(final View v, final boolean clickable) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setMenuFooter(v, clickable);
+            }
+        })) {
+            return;
+        }
         if(mListView != null) {
+            boolean inPlace = mFooterSlotList == mListView && clickable == isFooterClickable();
             setFooterClickable(clickable);
-            if(mListView.getAdapter() != null) {
-                ListAdapter adapter = mListView.getAdapter();
-                removeView(mListView);
-                configureList();
-                mListView.addFooterView(v, null, isFooterClickable());
-                mListView.setAdapter(adapter);
+            mFooterView = v;
+            if(inPlace) {
+                fillSlot(mFooterSlot, v);
+                mListRebuildsAvoided++;
+            } else if(mListView.getAdapter() != null) {
+                rebuildList();
             } else {
-                mListView.addFooterView(v, null, isFooterClickable());
+                attachFooterSlot();
             }
-            mFooterView = v;
         }
     }
 
     /**
      * Adding a header and a footer to an already populated ListView is quite inefficient.
      * To make it less messy, please use this method if you are going to add both of them.
+     * Once added, replacing them with others with the same clickable states is cheap.
      * @param header The header View
      * @param footer The footer View
      */
-    public void setMenuHeaderAndFooter(View header, View footer, boolean headerClickable, boolean footerClickable) {
+    public void setMenuHeaderAndFooter(final View header, final View footer, final boolean headerClickable, final boolean footerClickable) {
+        if(deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                setMenuHeaderAndFooter(header, footer, headerClickable, footerClickable);
+            }
+        })) {
+            return;
+        }
         if(mListView != null) {
+            boolean headerInPlace = mHeaderSlotList == mListView && headerClickable == isHeaderClickable();
+            boolean footerInPlace = mFooterSlotList == mListView && footerClickable == isFooterClickable();
             setHeaderClickable(headerClickable);
             setFooterClickable(footerClickable);
-            if(mListView.getAdapter() != null) {
-                ListAdapter adapter = mListView.getAdapter();
-                removeView(mListView);
-                configureList();
-                mListView.addHeaderView(header, null, isHeaderClickable());
-                mListView.addFooterView(footer, null, isFooterClickable());
-                mListView.setAdapter(adapter);
-            } else {
-                mListView.addFooterView(header, null, isHeaderClickable());
-                mListView.addFooterView(footer, null, isFooterClickable());
-            }
             mHeaderView = header;
             mFooterView = footer;
+            if(headerInPlace && footerInPlace) {
+                fillSlot(mHeaderSlot, header);
+                fillSlot(mFooterSlot, footer);
+                mListRebuildsAvoided++;
+            } else if(mListView.getAdapter() != null) {
+                rebuildList();
+            } else {
+                if(!headerInPlace) {
+                    attachHeaderSlot();
+                } else {
+                    fillSlot(mHeaderSlot, header);
+                }
+                if(!footerInPlace) {
+                    attachFooterSlot();
+                } else {
+                    fillSlot(mFooterSlot, footer);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if there's a header, even if it's a deferred one that hasn't been inflated yet
+     */
+    private boolean hasMenuHeader() {
+        return mHeaderView != null || (mDeferredAttributes != null && mDeferredAttributes.headerLayoutId != -1);
+    }
+
+    private boolean hasMenuFooter() {
+        return mFooterView != null || (mDeferredAttributes != null && mDeferredAttributes.footerLayoutId != -1);
+    }
+
+    private void attachHeaderSlot() {
+        if(mHeaderSlot == null) {
+            mHeaderSlot = new FrameLayout(getContext());
+        }
+        fillSlot(mHeaderSlot, mHeaderView);
+        mListView.addHeaderView(mHeaderSlot, null, isHeaderClickable());
+        mHeaderSlotList = mListView;
+    }
+
+    private void attachFooterSlot() {
+        if(mFooterSlot == null) {
+            mFooterSlot = new FrameLayout(getContext());
+        }
+        fillSlot(mFooterSlot, mFooterView);
+        mListView.addFooterView(mFooterSlot, null, isFooterClickable());
+        mFooterSlotList = mListView;
+    }
+
+    private void fillSlot(FrameLayout slot, View v) {
+        if(slot.getChildCount() == 1 && slot.getChildAt(0) == v) {
+            return;
+        }
+        slot.removeAllViews();
+        if(v == null) {
+            // Deferred header or footer, the slot stays empty until it's inflated
+            return;
+        }
+        if(v.getParent() instanceof ViewGroup) {
+            ((ViewGroup) v.getParent()).removeView(v);
+        }
+        if(v.getLayoutParams() == null) {
+            slot.addView(v, new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.WRAP_CONTENT));
+        } else {
+            slot.addView(v);
+        }
+    }
+
+    /**
+     * Re-creates the ListView keeping its adapter and checked item. Only needed when a header or
+     * footer has to be added to, or change its clickable state in, a list that already has an adapter.
+     */
+    private void rebuildList() {
+        ((ViewGroup) mListView.getParent()).removeView(mListView);
+        recycleListRows(mListView);
+        // A detached list never runs its posted badge update
+        mListView.removeCallbacks(mBadgeUpdater);
+        mBadgeUpdateScheduled = false;
+        configureList();
+        if(mAdapter != null) {
+            mListView.setAdapter(mAdapter);
+            setRowChecked(checkPosition, true);
+        }
+        if(mBadges.hasChanges()) {
+            scheduleBadgeUpdate();
         }
     }
 
+    /**
+     * Number of times the ListView has been inflated. Header and footer replacements that can be
+     * done in place don't inflate it again.
+     * @return The number of ListView inflations
+     */
+    public int getListInflationCount() {
+        return mListInflationCount;
+    }
+
+    /**
+     * Number of header or footer replacements done in place, each of them saving a ListView
+     * inflation and the full layout pass of the new list.
+     * @return The number of ListView rebuilds avoided
+     */
+    public int getListRebuildsAvoidedCount() {
+        return mListRebuildsAvoided;
+    }
+
     public boolean isHeaderClickable() {
         return mHeaderClickable;
     }
@@ -561,26 +2710,194 @@ public class GoogleNavigationDrawer extends DrawerLayout {
 
     @Override
     protected Parcelable onSaveInstanceState() {
-        Parcelable superState = super.onSaveInstanceState();
-        Bundle bundle = new Bundle();
-        bundle.putParcelable("view", superState);
-        bundle.putInt("position", checkPosition);
-        bundle.putBoolean("isdraweropen", isDrawerMenuOpen());
-        bundle.putBoolean("shouldchangetitle", mShouldChangeTitle);
-        return bundle;
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.setFlag(SavedState.FLAG_DRAWER_OPEN, isDrawerMenuOpen());
+        state.setFlag(SavedState.FLAG_CHANGE_TITLE, mShouldChangeTitle);
+        state.checkedSectionId = mCheckedSectionId;
+        state.checkedPosition = checkPosition;
+
+        if(mListView != null && mListView.getChildCount() > 0) {
+            state.firstVisiblePosition = mListView.getFirstVisiblePosition();
+            state.firstVisibleSectionId = getSectionId(state.firstVisiblePosition);
+            state.firstVisibleTop = mListView.getChildAt(0).getTop() - mListView.getPaddingTop();
+        }
+        if(mAdapter != null) {
+            state.expandedGroupIds = mAdapter.getExpandedGroupIds();
+        }
+        int badgeCount = mBadges.size();
+        state.badgeIds = new long[badgeCount];
+        state.badgeCounts = new int[badgeCount];
+        for(int i = 0; i < badgeCount; i++) {
+            state.badgeIds[i] = mBadges.getIdAt(i);
+            state.badgeCounts[i] = mBadges.getCountAt(i);
+        }
+        return state;
     }
 
     @Override
     public void onRestoreInstanceState(Parcelable state) {
-        Bundle bundle = (Bundle)state;
-        super.onRestoreInstanceState(bundle.getParcelable("view"));
-        check(bundle.getInt("position"));
-        mShouldChangeTitle = bundle.getBoolean("shouldchangetitle", false);
+        if(!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        mShouldChangeTitle = savedState.hasFlag(SavedState.FLAG_CHANGE_TITLE);
+        for(int i = 0; i < savedState.badgeIds.length; i++) {
+            mBadges.set(savedState.badgeIds[i], savedState.badgeCounts[i]);
+        }
+        if(!deferListCall(new Runnable() {
+            @Override
+            public void run() {
+                restoreListState(savedState);
+            }
+        })) {
+            restoreListState(savedState);
+        }
+        if(savedState.hasFlag(SavedState.FLAG_DRAWER_OPEN) && !isDrawerMenuOpen()) {
+            openDrawerMenu();
+        }
+    }
+
+    /**
+     * Restores the groups, the checked section and the scroll position, which only change the
+     * adapter and the selection of the ListView, so the list is laid out once for all of them.
+     * Sections are found by their stable id, the positions are only used when they have none.
+     */
+    private void restoreListState(SavedState state) {
+        if(mAdapter != null && state.expandedGroupIds.length > 0) {
+            mAdapter.setExpandedGroupIds(state.expandedGroupIds);
+        }
+        if(state.checkedSectionId == SectionModel.NO_STABLE_ID || !checkSectionById(state.checkedSectionId)) {
+            check(state.checkedPosition);
+        }
+
+        int firstVisiblePosition = state.firstVisiblePosition;
+        if(mAdapter != null && state.firstVisibleSectionId != SectionModel.NO_STABLE_ID) {
+            int section = mAdapter.getPositionForId(state.firstVisibleSectionId);
+            if(section != SectionModel.NO_POSITION) {
+                firstVisiblePosition = section + mListView.getHeaderViewsCount();
+            }
+        }
+        if(mListView.getCount() > 0 && (firstVisiblePosition > 0 || state.firstVisibleTop != 0)) {
+            mListView.setSelectionFromTop(Math.min(firstVisiblePosition, mListView.getCount() - 1), state.firstVisibleTop);
+        }
+
+        if(mBadges.hasChanges()) {
+            scheduleBadgeUpdate();
+        }
         if (mShouldChangeTitle && checkPosition != 0 && checkPosition != mListView.getCount() - 1) {
             CharSequence title = (CharSequence) mListView.getAdapter().getItem(checkPosition);
-            mActivity.setTitle(title);
+            // The activity may have restored it already
+            if(!TextUtils.equals(title, mActivity.getTitle())) {
+                mActivity.setTitle(title);
+            }
         }
-        if (bundle.getBoolean("isdraweropen", false))
-            openDrawerMenu();
+    }
+
+    /**
+     * State of the drawer kept by the activity: the checked section, the scroll position and
+     * the expanded groups, by the stable id of their sections, the badges and a few flags.
+     *
+     * It starts with a version and the size of its fields, so fields can be added in later
+     * versions and a state written by another version is read, or skipped, safely.
+     */
+    public static class SavedState implements Parcelable {
+
+        private static final int VERSION = 1;
+
+        static final int FLAG_DRAWER_OPEN = 1;
+        static final int FLAG_CHANGE_TITLE = 1 << 1;
+
+        private static final long[] NO_IDS = new long[0];
+        private static final int[] NO_COUNTS = new int[0];
+
+        private final Parcelable mSuperState;
+
+        int flags = 0;
+        long checkedSectionId = SectionModel.NO_STABLE_ID;
+        int checkedPosition = 0;
+        long firstVisibleSectionId = SectionModel.NO_STABLE_ID;
+        int firstVisiblePosition = 0;
+        int firstVisibleTop = 0;
+        long[] expandedGroupIds = NO_IDS;
+        long[] badgeIds = NO_IDS;
+        int[] badgeCounts = NO_COUNTS;
+
+        SavedState(Parcelable superState) {
+            mSuperState = superState;
+        }
+
+        private SavedState(Parcel in) {
+            // DrawerLayout's state isn't a framework class, it needs the class loader of the library
+            mSuperState = in.readParcelable(SavedState.class.getClassLoader());
+            int version = in.readInt();
+            int size = in.readInt();
+            int end = in.dataPosition() + size;
+            if(version >= 1) {
+                flags = in.readInt();
+                checkedSectionId = in.readLong();
+                checkedPosition = in.readInt();
+                firstVisibleSectionId = in.readLong();
+                firstVisiblePosition = in.readInt();
+                firstVisibleTop = in.readInt();
+                expandedGroupIds = in.createLongArray();
+                badgeIds = in.createLongArray();
+                badgeCounts = in.createIntArray();
+            }
+            // Fields added by later versions are skipped
+            in.setDataPosition(end);
+        }
+
+        public Parcelable getSuperState() {
+            return mSuperState;
+        }
+
+        void setFlag(int flag, boolean value) {
+            flags = value ? flags | flag : flags & ~flag;
+        }
+
+        boolean hasFlag(int flag) {
+            return (flags & flag) != 0;
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int parcelableFlags) {
+            out.writeParcelable(mSuperState, parcelableFlags);
+            out.writeInt(VERSION);
+            int sizePosition = out.dataPosition();
+            out.writeInt(0);
+            int start = out.dataPosition();
+            out.writeInt(flags);
+            out.writeLong(checkedSectionId);
+            out.writeInt(checkedPosition);
+            out.writeLong(firstVisibleSectionId);
+            out.writeInt(firstVisiblePosition);
+            out.writeInt(firstVisibleTop);
+            out.writeLongArray(expandedGroupIds);
+            out.writeLongArray(badgeIds);
+            out.writeIntArray(badgeCounts);
+            int end = out.dataPosition();
+            out.setDataPosition(sizePosition);
+            out.writeInt(end - start);
+            out.setDataPosition(end);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
     }
 }
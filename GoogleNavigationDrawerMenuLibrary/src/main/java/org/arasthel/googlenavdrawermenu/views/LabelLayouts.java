@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.views;
+
+import android.graphics.Typeface;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import org.arasthel.googlenavdrawermenu.adapters.GoogleNavigationDrawerAdapter;
+import org.arasthel.googlenavdrawermenu.adapters.SectionModel;
+
+/**
+ * Labels of the sections of a SectionModel laid out ahead of time for {@link NavigationRowView}:
+ * the text as the row shows it and its width in the normal and the bold typeface. A row whose
+ * label fits draws it without measuring anything, checked or not. Labels that don't fit are
+ * ellipsized the first time they're drawn in a width and kept for that width.
+ *
+ * Build it in a background thread; the rest of the methods are called from the UI thread.
+ */
+public class LabelLayouts {
+
+    private static final int NORMAL = 0;
+    private static final int BOLD = 1;
+
+    private final SectionModel mModel;
+    private final String[] mTexts;
+    // Two values per label: normal and bold
+    private final float[] mWidths;
+    private final CharSequence[] mEllipsizedTexts;
+    private final float[] mEllipsizedWidths;
+    // Main normal, main bold, secondary normal and secondary bold
+    private final TextPaint[] mPaints;
+    private final long mBuildTimeNanos;
+
+    private LabelLayouts(SectionModel model, String[] texts, float[] widths, TextPaint[] paints, long buildTimeNanos) {
+        mModel = model;
+        mTexts = texts;
+        mWidths = widths;
+        mPaints = paints;
+        mEllipsizedTexts = new CharSequence[widths.length];
+        mEllipsizedWidths = new float[widths.length];
+        mBuildTimeNanos = buildTimeNanos;
+    }
+
+    /**
+     * Measures every label of the model. It can be called from any thread.
+     * @param model The sections
+     * @param mainTextSize The text size of main section rows, in pixels
+     * @param secondaryTextSize The text size of secondary section rows, in pixels
+     * @return The layouts of the labels
+     */
+    public static LabelLayouts build(SectionModel model, float mainTextSize, float secondaryTextSize) {
+        long start = System.nanoTime();
+        TextPaint[] paints = new TextPaint[] {
+                createPaint(mainTextSize, Typeface.NORMAL), createPaint(mainTextSize, Typeface.BOLD),
+                createPaint(secondaryTextSize, Typeface.NORMAL), createPaint(secondaryTextSize, Typeface.BOLD)
+        };
+        int count = model.getCount();
+        String[] texts = new String[count];
+        float[] widths = new float[2 * count];
+        for(int i = 0; i < count; i++) {
+            boolean secondary = model.getType(i) == GoogleNavigationDrawerAdapter.TYPE_SECONDARY;
+            String text = NavigationRowView.getDisplayedLabel(model.getLabel(i), secondary);
+            texts[i] = text;
+            if(text != null) {
+                int paint = secondary ? 2 : 0;
+                widths[2 * i + NORMAL] = paints[paint + NORMAL].measureText(text);
+                widths[2 * i + BOLD] = paints[paint + BOLD].measureText(text);
+            }
+        }
+        return new LabelLayouts(model, texts, widths, paints, System.nanoTime() - start);
+    }
+
+    private static TextPaint createPaint(float textSize, int style) {
+        TextPaint paint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(textSize);
+        paint.setTypeface(Typeface.defaultFromStyle(style));
+        return paint;
+    }
+
+    public SectionModel getModel() {
+        return mModel;
+    }
+
+    /**
+     * @return The label of the section as the row shows it, i.e. in upper case for secondary
+     * sections from Jelly Bean on
+     */
+    public String getText(int position) {
+        return mTexts[position];
+    }
+
+    /**
+     * @return The width of the whole label, in pixels
+     */
+    public float getWidth(int position, boolean bold) {
+        return mWidths[2 * position + (bold ? BOLD : NORMAL)];
+    }
+
+    /**
+     * @param position The position of the section
+     * @param bold True for the checked, bold, label
+     * @param available The width available for the label, in pixels
+     * @return The label if it fits in the width or the label ellipsized to it
+     */
+    public CharSequence getFittingText(int position, boolean bold, float available) {
+        String text = mTexts[position];
+        int index = 2 * position + (bold ? BOLD : NORMAL);
+        if(text == null || mWidths[index] <= available) {
+            return text;
+        }
+        if(mEllipsizedTexts[index] == null || mEllipsizedWidths[index] != available) {
+            int paint = (mModel.getType(position) == GoogleNavigationDrawerAdapter.TYPE_SECONDARY ? 2 : 0) + (bold ? BOLD : NORMAL);
+            mEllipsizedTexts[index] = TextUtils.ellipsize(text, mPaints[paint], Math.max(0, available), TextUtils.TruncateAt.END);
+            mEllipsizedWidths[index] = available;
+        }
+        return mEllipsizedTexts[index];
+    }
+
+    public long getBuildTimeNanos() {
+        return mBuildTimeNanos;
+    }
+}
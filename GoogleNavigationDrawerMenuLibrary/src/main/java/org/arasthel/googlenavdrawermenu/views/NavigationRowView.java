@@ -0,0 +1,399 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.arasthel.googlenavdrawermenu.views;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.Checkable;
+
+import org.arasthel.googlenavdrawermenu.R;
+
+import java.util.Locale;
+
+/**
+ * Single View section row. Draws the icon, the label and the dividers itself, so a row is
+ * measured and drawn in one pass instead of going through a RelativeLayout with 4 or 5 children.
+ *
+ * It looks the same as main_navigation_item and secondary_navigation_item.
+ */
+public class NavigationRowView extends View implements Checkable {
+
+    private static final int[] CHECKED_STATE_SET = { android.R.attr.state_checked };
+
+    private boolean mSecondary;
+    private boolean mChecked = false;
+
+    private CharSequence mLabel;
+    private CharSequence mEllipsizedLabel;
+    private LabelLayouts mLabelLayouts;
+    private int mLabelPosition;
+    private TextPaint mTextPaint;
+    private ColorStateList mTextColors;
+    private boolean mAllCaps;
+
+    private Drawable mIcon;
+    private int mIconSize;
+    private int mIconMarginLeft;
+    private int mTextPaddingLeft;
+    private int mMinHeight;
+
+    private Drawable mTopDivider;
+    private Drawable mBottomDivider;
+    private int mDividerHeight;
+    private boolean mTopDividerVisible;
+    private boolean mBottomDividerVisible = true;
+
+    private String mBadge;
+    private Drawable mBadgeBackground;
+    private TextPaint mBadgePaint;
+    private int mBadgeWidth;
+    private int mBadgeHeight;
+    private int mBadgePadding;
+    private int mBadgeMarginRight;
+
+    public NavigationRowView(Context context, boolean secondary) {
+        super(context);
+        mSecondary = secondary;
+
+        Resources res = getResources();
+        mIconSize = res.getDimensionPixelSize(secondary ? R.dimen.secondary_section_icon_size : R.dimen.main_section_icon_size);
+        mMinHeight = res.getDimensionPixelSize(secondary ? R.dimen.secondary_section_item_height : R.dimen.main_section_item_height);
+        mIconMarginLeft = res.getDimensionPixelSize(R.dimen.section_icon_margin_left);
+        mTextPaddingLeft = res.getDimensionPixelSize(R.dimen.section_text_padding_left);
+
+        mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setTextSize(res.getDimension(secondary ? R.dimen.secondary_section_text_size : R.dimen.main_section_text_size));
+        mTextPaint.setTypeface(Typeface.defaultFromStyle(Typeface.NORMAL));
+
+        TypedArray a = context.obtainStyledAttributes(android.R.style.TextAppearance_Medium, new int[] { android.R.attr.textColor });
+        mTextColors = a.getColorStateList(0);
+        a.recycle();
+        updateTextColor();
+
+        mAllCaps = isAllCaps(secondary);
+
+        if(secondary) {
+            mDividerHeight = res.getDimensionPixelSize(R.dimen.secondary_section_divider_height);
+            mTopDivider = new ColorDrawable(res.getColor(R.color.secondary_divider_color));
+            mBottomDivider = new ColorDrawable(res.getColor(R.color.secondary_divider_color));
+        }
+    }
+
+    public boolean isSecondary() {
+        return mSecondary;
+    }
+
+    public void setLabel(CharSequence label) {
+        if(mAllCaps && label != null) {
+            label = label.toString().toUpperCase(Locale.getDefault());
+        }
+        mLabel = label;
+        mLabelLayouts = null;
+        mEllipsizedLabel = null;
+        invalidate();
+    }
+
+    /**
+     * Set the label of a section from its precomputed layout, so it isn't measured when it's
+     * drawn or the row is checked
+     * @param layouts The layouts of the labels of the model of the section
+     * @param position The position of the section in the model
+     */
+    public void setLabel(LabelLayouts layouts, int position) {
+        mLabel = layouts.getText(position);
+        mLabelLayouts = layouts;
+        mLabelPosition = position;
+        mEllipsizedLabel = null;
+        invalidate();
+    }
+
+    // SecondarySectionText is all caps from Jelly Bean on
+    private static boolean isAllCaps(boolean secondary) {
+        return secondary && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    /**
+     * @return The label as a row shows it
+     */
+    static String getDisplayedLabel(String label, boolean secondary) {
+        if(isAllCaps(secondary) && label != null) {
+            return label.toUpperCase(Locale.getDefault());
+        }
+        return label;
+    }
+
+    public CharSequence getLabel() {
+        return mLabel;
+    }
+
+    /**
+     * Set the text of the badge shown at the end of the row, like main_navigation_item's badge.
+     * @param badge The text. Use null to hide it.
+     */
+    public void setBadge(String badge) {
+        if(TextUtils.equals(mBadge, badge)) {
+            return;
+        }
+        if(badge != null && mBadgePaint == null) {
+            Resources res = getResources();
+            mBadgeHeight = res.getDimensionPixelSize(R.dimen.badge_height);
+            mBadgePadding = res.getDimensionPixelSize(R.dimen.badge_padding);
+            mBadgeMarginRight = res.getDimensionPixelSize(R.dimen.badge_margin_right);
+            mBadgeBackground = res.getDrawable(R.drawable.badge_background);
+            mBadgePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+            mBadgePaint.setTextSize(res.getDimension(R.dimen.badge_text_size));
+            mBadgePaint.setColor(res.getColor(R.color.badge_text_color));
+        }
+        mBadge = badge;
+        if(badge != null) {
+            mBadgeWidth = Math.max(mBadgeHeight, (int) Math.ceil(mBadgePaint.measureText(badge)) + 2 * mBadgePadding);
+        }
+        mEllipsizedLabel = null;
+        invalidate();
+    }
+
+    public String getBadge() {
+        return mBadge;
+    }
+
+    /**
+     * Set the icon of the section.
+     * @param icon The icon drawable. Use null to hide it.
+     */
+    public void setIcon(Drawable icon) {
+        if(mIcon == icon) {
+            return;
+        }
+        if(mIcon != null) {
+            mIcon.setCallback(null);
+        }
+        mIcon = icon;
+        if(icon != null) {
+            icon.setCallback(this);
+            icon.setState(getDrawableState());
+        }
+        mEllipsizedLabel = null;
+        invalidate();
+    }
+
+    public Drawable getIcon() {
+        return mIcon;
+    }
+
+    /**
+     * Set the drawable used for both dividers. Only secondary sections have a top divider.
+     */
+    public void setDividerDrawable(Drawable divider) {
+        mTopDivider = divider;
+        mBottomDivider = divider;
+        invalidate();
+    }
+
+    public void setDividerColor(int color) {
+        mTopDivider = new ColorDrawable(color);
+        mBottomDivider = new ColorDrawable(color);
+        invalidate();
+    }
+
+    public void setDividerHeight(int height) {
+        if(mDividerHeight != height) {
+            mDividerHeight = height;
+            requestLayout();
+        }
+    }
+
+    public void setTopDividerVisible(boolean visible) {
+        if(mTopDividerVisible != visible) {
+            mTopDividerVisible = visible;
+            requestLayout();
+        }
+    }
+
+    public void setBottomDividerVisible(boolean visible) {
+        if(mBottomDividerVisible != visible) {
+            mBottomDividerVisible = visible;
+            requestLayout();
+        }
+    }
+
+    private int getTopDividerHeight() {
+        return mSecondary && mTopDividerVisible ? mDividerHeight : 0;
+    }
+
+    private int getBottomDividerHeight() {
+        return mBottomDividerVisible ? mDividerHeight : 0;
+    }
+
+    private int getTextLeft() {
+        int left = getPaddingLeft() + mTextPaddingLeft;
+        if(mIcon != null) {
+            left += mIconMarginLeft + mIconSize;
+        }
+        return left;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int textHeight = Math.max(mMinHeight, (int) Math.ceil(mTextPaint.descent() - mTextPaint.ascent()));
+        int height = getPaddingTop() + getTopDividerHeight() + textHeight + getBottomDividerHeight() + getPaddingBottom();
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mEllipsizedLabel = null;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int width = getWidth();
+        int top = getPaddingTop();
+        int bottom = getHeight() - getPaddingBottom();
+
+        int topDividerHeight = getTopDividerHeight();
+        if(topDividerHeight > 0 && mTopDivider != null) {
+            mTopDivider.setBounds(0, top, width, top + topDividerHeight);
+            mTopDivider.draw(canvas);
+        }
+        int bottomDividerHeight = getBottomDividerHeight();
+        if(bottomDividerHeight > 0 && mBottomDivider != null) {
+            mBottomDivider.setBounds(0, bottom - bottomDividerHeight, width, bottom);
+            mBottomDivider.draw(canvas);
+        }
+
+        int contentTop = top + topDividerHeight;
+        int contentBottom = bottom - bottomDividerHeight;
+
+        if(mIcon != null) {
+            drawIcon(canvas, getPaddingLeft() + mIconMarginLeft, (contentTop + contentBottom - mIconSize) / 2);
+        }
+
+        int textRight = width - getPaddingRight();
+        if(mBadge != null) {
+            int badgeRight = textRight - mBadgeMarginRight;
+            int badgeTop = (contentTop + contentBottom - mBadgeHeight) / 2;
+            mBadgeBackground.setBounds(badgeRight - mBadgeWidth, badgeTop, badgeRight, badgeTop + mBadgeHeight);
+            mBadgeBackground.draw(canvas);
+            float badgeBaseline = (contentTop + contentBottom - mBadgePaint.descent() - mBadgePaint.ascent()) / 2;
+            float badgeTextLeft = badgeRight - (mBadgeWidth + mBadgePaint.measureText(mBadge)) / 2;
+            canvas.drawText(mBadge, badgeTextLeft, badgeBaseline, mBadgePaint);
+            textRight = badgeRight - mBadgeWidth;
+        }
+
+        if(mLabel != null) {
+            int textLeft = getTextLeft();
+            if(mEllipsizedLabel == null) {
+                float available = textRight - textLeft;
+                if(mLabelLayouts != null) {
+                    mEllipsizedLabel = mLabelLayouts.getFittingText(mLabelPosition, mChecked, Math.max(0, available));
+                } else {
+                    mEllipsizedLabel = TextUtils.ellipsize(mLabel, mTextPaint, Math.max(0, available), TextUtils.TruncateAt.END);
+                }
+            }
+            float baseline = (contentTop + contentBottom - mTextPaint.descent() - mTextPaint.ascent()) / 2;
+            canvas.drawText(mEllipsizedLabel, 0, mEllipsizedLabel.length(), textLeft, baseline, mTextPaint);
+        }
+    }
+
+    /**
+     * Draws the icon centered inside its square box, scaled down if it doesn't fit (centerInside)
+     */
+    private void drawIcon(Canvas canvas, int left, int top) {
+        int iconWidth = mIcon.getIntrinsicWidth();
+        int iconHeight = mIcon.getIntrinsicHeight();
+        if(iconWidth <= 0 || iconHeight <= 0) {
+            iconWidth = mIconSize;
+            iconHeight = mIconSize;
+        } else if(iconWidth > mIconSize || iconHeight > mIconSize) {
+            float scale = Math.min((float) mIconSize / iconWidth, (float) mIconSize / iconHeight);
+            iconWidth = (int) (iconWidth * scale);
+            iconHeight = (int) (iconHeight * scale);
+        }
+        int iconLeft = left + (mIconSize - iconWidth) / 2;
+        int iconTop = top + (mIconSize - iconHeight) / 2;
+        mIcon.setBounds(iconLeft, iconTop, iconLeft + iconWidth, iconTop + iconHeight);
+        mIcon.draw(canvas);
+    }
+
+    @Override
+    protected int[] onCreateDrawableState(int extraSpace) {
+        final int[] drawableState = super.onCreateDrawableState(extraSpace + 1);
+        if (isChecked())
+            mergeDrawableStates(drawableState, CHECKED_STATE_SET);
+        return drawableState;
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        if(mIcon != null && mIcon.isStateful()) {
+            mIcon.setState(getDrawableState());
+        }
+        if(updateTextColor()) {
+            invalidate();
+        }
+    }
+
+    private boolean updateTextColor() {
+        if(mTextColors == null) {
+            return false;
+        }
+        int color = mTextColors.getColorForState(getDrawableState(), mTextColors.getDefaultColor());
+        if(color != mTextPaint.getColor()) {
+            mTextPaint.setColor(color);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mIcon || super.verifyDrawable(who);
+    }
+
+    @Override
+    public void setChecked(boolean b) {
+        if(mChecked == b) {
+            return;
+        }
+        mChecked = b;
+        mTextPaint.setTypeface(Typeface.defaultFromStyle(b ? Typeface.BOLD : Typeface.NORMAL));
+        mEllipsizedLabel = null;
+        refreshDrawableState();
+        invalidate();
+    }
+
+    @Override
+    public boolean isChecked() {
+        return mChecked;
+    }
+
+    @Override
+    public void toggle() {
+        setChecked(!isChecked());
+    }
+}